@@ -0,0 +1,89 @@
+package com.webjer.benchmarks;
+
+import com.webjer.MethodMetrics;
+import com.webjer.Metrics;
+import com.webjer.q2.StateUtils;
+import com.webjer.q3.TextUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Metrics} overhead benchmark: the bare instrumentation (the measure wrapper around a
+ * trivial call) and the cheapest instrumented entry points with the metrics off, on (one of
+ * {@link Metrics#DEFAULT_SAMPLING_RATE} calls timed) and on with every call timed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final static MethodMetrics METRICS =
+        Metrics.register(MetricsBenchmark.class, "instrumentation()");
+
+    /**
+     * Metrics mode: <tt>off</tt>, <tt>sampled</tt> (the default sampling) or <tt>timed</tt>
+     * (every call is timed).
+     */
+    @Param({"off", "sampled", "timed"})
+    private String mode;
+
+    private String stateName;
+    private char[] stateCode;
+    private String text;
+    private int[] lineOffsets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Metrics.setEnabled(!"off".equals(mode));
+        Metrics.setSamplingRate("timed".equals(mode) ? 1 : Metrics.DEFAULT_SAMPLING_RATE);
+        // Copies, so the lookups don't compare the strings by reference
+        stateName = new String("Pennsylvania");
+        stateCode = "PA".toCharArray();
+        text = "A short line";
+        lineOffsets = new int[16];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.setSamplingRate(Metrics.DEFAULT_SAMPLING_RATE);
+        Metrics.reset();
+    }
+
+    @Benchmark
+    public String instrumentation() {
+        return METRICS.measure(() -> 12, () -> text);
+    }
+
+    @Benchmark
+    public String parseSelectedState() {
+        return StateUtils.parseSelectedState(stateName);
+    }
+
+    @Benchmark
+    public String displayStateFullName() {
+        return StateUtils.displayStateFullName(stateCode, 0, stateCode.length);
+    }
+
+    @Benchmark
+    public int wrapTextLineOffsets() {
+        return TextUtils.wrapText(text, 80, lineOffsets);
+    }
+}
@@ -0,0 +1,110 @@
+package com.webjer.benchmarks;
+
+import com.webjer.q1.SetsUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SetsUtils#allStringSetsIdentical(String[][])} benchmark.
+ * <p>
+ * All the sets hold the same distinct strings (in different order, some of them repeated), but
+ * the one at the mismatch position, which has a single string replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SetsUtilsBenchmark {
+
+    @Param({"2", "100", "1000"})
+    private int setsCount;
+
+    @Param({"10", "1000"})
+    private int setSize;
+
+    /**
+     * Part of the set elements which are the duplicates.
+     */
+    @Param({"0", "0.5"})
+    private double duplicateRatio;
+
+    /**
+     * Position of the mismatching set: <tt>none</tt>, <tt>first</tt> (the second set, as the first
+     * one is the reference), <tt>middle</tt> or <tt>last</tt>.
+     */
+    @Param({"none", "first", "middle", "last"})
+    private String mismatchPosition;
+
+    private String[][] sets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        String[] distinct = new String[setSize];
+        for (int i = 0; i < setSize; i++) {
+            distinct[i] = "element-" + Integer.toHexString(random.nextInt()) + "-" + i;
+        }
+        int length = (int) Math.round(setSize / (1 - duplicateRatio));
+        sets = new String[setsCount][];
+        for (int i = 0; i < setsCount; i++) {
+            String[] set = new String[length];
+            for (int j = 0; j < length; j++) {
+                // Every distinct string goes first, the rest are the duplicates
+                set[j] = j < setSize ? distinct[j] : distinct[random.nextInt(setSize)];
+            }
+            shuffle(set, random);
+            // Distinct copies, so the strings aren't compared by reference only
+            for (int j = 0; j < length; j++) {
+                set[j] = new String(set[j]);
+            }
+            sets[i] = set;
+        }
+        int mismatch = mismatchIndex();
+        if (mismatch >= 0) {
+            sets[mismatch][random.nextInt(length)] = "mismatch";
+        }
+    }
+
+    private int mismatchIndex() {
+        switch (mismatchPosition) {
+            case "first":
+                return 1;
+            case "middle":
+                return setsCount / 2;
+            case "last":
+                return setsCount - 1;
+            default:
+                return -1;
+        }
+    }
+
+    private static void shuffle(String[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    @Benchmark
+    public boolean allStringSetsIdentical() {
+        return SetsUtils.allStringSetsIdentical(sets);
+    }
+}
@@ -0,0 +1,94 @@
+package com.webjer.benchmarks;
+
+import com.webjer.q2.StateUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StateUtils} lookups and select list rendering benchmark.
+ * <p>
+ * Every invocation takes the next of the inputs (all the states), so neither the branches nor
+ * the results are the same every time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StateUtilsBenchmark {
+
+    /**
+     * Inputs spelling: <tt>exact</tt> (as the data file has it), <tt>lowercase</tt> or
+     * <tt>unknown</tt> (no such states, so the lookups fail).
+     */
+    @Param({"exact", "lowercase", "unknown"})
+    private String spelling;
+
+    private String[] names;
+    private String[] codes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int count = StateUtils.statesCount();
+        names = new String[count];
+        codes = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = spell(StateUtils.stateName(i));
+            codes[i] = spell(StateUtils.stateCode(i));
+        }
+    }
+
+    private String spell(String input) {
+        switch (spelling) {
+            case "lowercase":
+                return input.toLowerCase(Locale.ROOT);
+            case "unknown":
+                return input + "X";
+            default:
+                // A copy, so the lookups don't compare the strings by reference
+                return new String(input);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == names.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public String parseSelectedState() {
+        return StateUtils.parseSelectedState(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public String displayStateFullName() {
+        return StateUtils.displayStateFullName(codes[nextIndex()]);
+    }
+
+    @Benchmark
+    public String createStateSelectList() {
+        return StateUtils.createStateSelectList();
+    }
+
+    @Benchmark
+    public String createStateSelectListSelected() {
+        return StateUtils.createStateSelectList(codes[nextIndex()]);
+    }
+}
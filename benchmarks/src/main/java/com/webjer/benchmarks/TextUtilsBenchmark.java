@@ -0,0 +1,114 @@
+package com.webjer.benchmarks;
+
+import com.webjer.q3.TextUtils;
+import com.webjer.q3.WrapMode;
+import com.webjer.q3.WrapTextCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TextUtils#wrapText(String, int)} and its variants benchmark over random texts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextUtilsBenchmark {
+
+    @Param({"2000", "100000", "10000000"})
+    private int textSize;
+
+    @Param({"20", "80", "200"})
+    private int maxCharsPerLine;
+
+    /**
+     * Word lengths distribution: <tt>short</tt> (1-8 chars), <tt>long</tt> (10-40 chars, some of
+     * them don't fit the narrow lines) or <tt>mixed</tt> (geometric, mean length of 6 chars).
+     */
+    @Param({"short", "long", "mixed"})
+    private String wordLengths;
+
+    private String text;
+    private int[] lineOffsets;
+    private StringBuilder output;
+    private WrapTextCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder(textSize + 64);
+        while (sb.length() < textSize) {
+            int wordLength = nextWordLength(random);
+            for (int i = 0; i < wordLength; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            // Paragraphs of about 50 words, spaces are sometimes repeated
+            sb.append(random.nextInt(50) == 0 ? "\n" : random.nextInt(10) == 0 ? "  " : " ");
+        }
+        sb.setLength(textSize);
+        text = sb.toString();
+        // Every line takes at least a char and a newline
+        lineOffsets = new int[textSize + 2];
+        output = new StringBuilder(textSize + (textSize >>> 2));
+        cache = new WrapTextCache(64L * textSize + (1 << 20));
+        cache.wrapText(text, maxCharsPerLine);
+    }
+
+    private int nextWordLength(Random random) {
+        switch (wordLengths) {
+            case "short":
+                return 1 + random.nextInt(8);
+            case "long":
+                return 10 + random.nextInt(31);
+            default:
+                int length = 1;
+                while (random.nextInt(6) != 0) {
+                    length++;
+                }
+                return length;
+        }
+    }
+
+    @Benchmark
+    public String wrapText() {
+        return TextUtils.wrapText(text, maxCharsPerLine);
+    }
+
+    @Benchmark
+    public String wrapTextOptimal() {
+        return TextUtils.wrapText(text, maxCharsPerLine, WrapMode.OPTIMAL);
+    }
+
+    @Benchmark
+    public int wrapTextLineOffsets() {
+        return TextUtils.wrapText(text, maxCharsPerLine, lineOffsets);
+    }
+
+    @Benchmark
+    public StringBuilder wrapTextAppendable() throws Exception {
+        output.setLength(0);
+        TextUtils.wrapText(text, maxCharsPerLine, output);
+        return output;
+    }
+
+    @Benchmark
+    public String wrapTextCached() {
+        return cache.wrapText(text, maxCharsPerLine);
+    }
+}
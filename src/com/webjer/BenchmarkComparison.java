@@ -0,0 +1,382 @@
+package com.webjer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Comparison of a benchmark run with the baseline one.
+ * <p>
+ * Differences are regressions only if they are both statistically significant and beyond the
+ * {@link Thresholds}:
+ * <ul>
+ * <li>throughput (iterations per second): Mann-Whitney U test over the iteration times (taken
+ * from the histogram buckets, the values within a bucket are ties) and the change of the median
+ * throughput, so a few slow iterations (e.g. GC pauses) don't shift the result as they shift the
+ * mean. With less than 5 iterations on either side no difference is significant at
+ * <tt>alpha</tt> of 0.01;</li>
+ * <li>latency percentiles (p50, p99, p999): the distribution-free confidence intervals of both
+ * percentiles (by the order statistics) shouldn't overlap. A percentile isn't tested if there
+ * are too few iterations for its interval (e.g. p99 takes hundreds of iterations);</li>
+ * <li>allocation per iteration: it's (nearly) deterministic, so the relative and the absolute
+ * increases are checked, the latter filters out the measuring own allocations.</li>
+ * </ul>
+ */
+public final class BenchmarkComparison {
+
+    private final static double[] PERCENTILES = {50, 99, 99.9};
+    private final static String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+
+    private final BenchmarkStore.Record baseline;
+    private final BenchmarkStore.Record run;
+    private final double throughputChange;
+    private final double pValue;
+    private final String text;
+    private final List<String> regressions;
+
+    private BenchmarkComparison(BenchmarkStore.Record baseline,
+                                BenchmarkStore.Record run,
+                                double throughputChange,
+                                double pValue,
+                                String text,
+                                List<String> regressions) {
+        this.baseline = baseline;
+        this.run = run;
+        this.throughputChange = throughputChange;
+        this.pValue = pValue;
+        this.text = text;
+        this.regressions = Collections.unmodifiableList(regressions);
+    }
+
+    /**
+     * Compares the records (of the same benchmark and parameters).
+     */
+    public static BenchmarkComparison of(BenchmarkStore.Record baseline,
+                                         BenchmarkStore.Record run,
+                                         Thresholds thresholds) {
+        if (baseline == null || run == null || thresholds == null) {
+            throw new IllegalArgumentException("Records and thresholds can't be null.");
+        }
+        Buckets baselineBuckets = new Buckets(baseline.getMeasurement().getHistogram());
+        Buckets runBuckets = new Buckets(run.getMeasurement().getHistogram());
+        List<String> regressions = new ArrayList<>();
+        StringBuilder text = new StringBuilder(160);
+        text.append(run.getBenchmark());
+        if (!run.getParameters().isEmpty()) {
+            text.append(" [").append(run.getParameters()).append(']');
+        }
+
+        // Throughput
+        double[] test = mannWhitney(baselineBuckets, runBuckets);
+        double pValue = test[0];
+        double throughputChange = baselineBuckets.histogram.getMean()
+                                  / Math.max(1, runBuckets.histogram.getMean()) - 1;
+        double medianThroughputChange = (double) baselineBuckets.histogram.getPercentile(50)
+                                        / Math.max(1, runBuckets.histogram.getPercentile(50)) - 1;
+        text.append(String.format(Locale.ROOT, ": throughput %+.1f%% (median %+.1f%%, p %s)",
+                                  throughputChange * 100,
+                                  medianThroughputChange * 100,
+                                  pValue < 0.0001
+                                  ? "< 0.0001"
+                                  : String.format(Locale.ROOT, "= %.4f", pValue)));
+        if (pValue < thresholds.alpha && test[1] > 0.5
+            && -medianThroughputChange > thresholds.throughput) {
+            regressions.add("throughput");
+        }
+
+        // Latency percentiles
+        double z = normalQuantile(1 - thresholds.alpha / 2);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            long baselineValue = baselineBuckets.histogram.getPercentile(PERCENTILES[i]);
+            long runValue = runBuckets.histogram.getPercentile(PERCENTILES[i]);
+            double change = (double) runValue / Math.max(1, baselineValue) - 1;
+            text.append(String.format(Locale.ROOT, ", %s %+.1f%%", PERCENTILE_NAMES[i],
+                                      change * 100));
+            long[] baselineInterval = baselineBuckets.percentileInterval(PERCENTILES[i], z);
+            long[] runInterval = runBuckets.percentileInterval(PERCENTILES[i], z);
+            if (baselineInterval == null || runInterval == null) {
+                text.append(" (untested)");
+            } else if (runInterval[0] > baselineInterval[1] && change > thresholds.percentile) {
+                regressions.add(PERCENTILE_NAMES[i]);
+            }
+        }
+
+        // Allocation
+        long baselineBytes = baseline.getMeasurement().getAllocatedBytesPerIteration();
+        long runBytes = run.getMeasurement().getAllocatedBytesPerIteration();
+        if (baselineBytes < 0 || runBytes < 0) {
+            text.append(", allocation unknown");
+        } else {
+            text.append(String.format(Locale.ROOT, ", allocation %+d bytes",
+                                      runBytes - baselineBytes));
+            if (runBytes - baselineBytes > thresholds.allocationBytes
+                && runBytes > baselineBytes * (1 + thresholds.allocation)) {
+                regressions.add("allocation");
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            text.append(" - REGRESSION of ").append(String.join(", ", regressions));
+        }
+        return new BenchmarkComparison(baseline, run, throughputChange, pValue, text.toString(),
+                                       regressions);
+    }
+
+    public BenchmarkStore.Record getBaseline() {
+        return baseline;
+    }
+
+    public BenchmarkStore.Record getRun() {
+        return run;
+    }
+
+    /**
+     * @return relative mean throughput change (negative if the run is slower on average).
+     */
+    public double getThroughputChange() {
+        return throughputChange;
+    }
+
+    /**
+     * @return two-sided p-value of the Mann-Whitney U test of the iteration times.
+     */
+    public double getPValue() {
+        return pValue;
+    }
+
+    /**
+     * @return regressed metrics: <tt>throughput</tt>, <tt>p50</tt>, <tt>p99</tt>, <tt>p999</tt>
+     * or <tt>allocation</tt>.
+     */
+    public List<String> getRegressions() {
+        return regressions;
+    }
+
+    public boolean isRegression() {
+        return !regressions.isEmpty();
+    }
+
+    /**
+     * @return single line summary, e.g. <tt>Name parsed: throughput -12.3% (median -12.0%, p =
+     * 0.0012), p50 +13.6%, p99 +9.5% (untested), p999 +9.5% (untested), allocation +0 bytes -
+     * REGRESSION of throughput, p50</tt>
+     */
+    public String toText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    //------------------------------------------------------------------------------------------
+    // Statistics
+    //------------------------------------------------------------------------------------------
+
+    /**
+     * Mann-Whitney U test (normal approximation with the ties and continuity corrections).
+     *
+     * @return two-sided p-value and the probability that a run iteration is slower than a
+     * baseline one.
+     */
+    static double[] mannWhitney(Buckets baseline, Buckets run) {
+        double n1 = baseline.histogram.getCount();
+        double n2 = run.histogram.getCount();
+        double n = n1 + n2;
+        // Both histograms have the same buckets, so the lower bounds are merged as keys
+        double rankSum = 0;
+        double ranked = 0;
+        double ties = 0;
+        int i = 0;
+        int j = 0;
+        while (i < baseline.size || j < run.size) {
+            long a = 0;
+            long b = 0;
+            if (j == run.size
+                || i < baseline.size && baseline.lowerBounds[i] <= run.lowerBounds[j]) {
+                a = baseline.counts[i];
+                if (j < run.size && baseline.lowerBounds[i] == run.lowerBounds[j]) {
+                    b = run.counts[j++];
+                }
+                i++;
+            } else {
+                b = run.counts[j++];
+            }
+            double t = a + b;
+            rankSum += b * (ranked + (t + 1) / 2);
+            ranked += t;
+            ties += t * t * t - t;
+        }
+        double u = rankSum - n2 * (n2 + 1) / 2;
+        double mean = n1 * n2 / 2;
+        double variance = n1 * n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+        double pValue = 1;
+        if (variance > 0) {
+            double z = Math.max(0, Math.abs(u - mean) - 0.5) / Math.sqrt(variance);
+            pValue = Math.min(1, 2 * (1 - normalCdf(z)));
+        }
+        return new double[] {pValue, u / (n1 * n2)};
+    }
+
+    static double normalCdf(double x) {
+        return 0.5 * erfc(-x / Math.sqrt(2));
+    }
+
+    /**
+     * Complementary error function (Chebyshev approximation, relative error below 1.2e-7).
+     */
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196
+                   + t * (0.09678418 + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398
+                   + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+
+    static double normalQuantile(double p) {
+        double low = -40;
+        double high = 40;
+        for (int i = 0; i < 100; i++) {
+            double middle = (low + high) / 2;
+            if (normalCdf(middle) < p) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Non-empty histogram buckets.
+     */
+    static final class Buckets {
+
+        private final LatencyHistogram histogram;
+        private final long[] lowerBounds;
+        private final long[] upperBounds;
+        private final long[] counts;
+        private int size;
+
+        Buckets(LatencyHistogram histogram) {
+            this.histogram = histogram;
+            int[] buckets = new int[1];
+            histogram.forEachBucket((lowerBound, upperBound, count) -> buckets[0]++);
+            lowerBounds = new long[buckets[0]];
+            upperBounds = new long[buckets[0]];
+            counts = new long[buckets[0]];
+            histogram.forEachBucket((lowerBound, upperBound, count) -> {
+                lowerBounds[size] = lowerBound;
+                upperBounds[size] = upperBound;
+                counts[size++] = count;
+            });
+        }
+
+        /**
+         * Finds the distribution-free confidence interval of the percentile: the values of the
+         * ranks <tt>nq -/+ z * sqrt(nq(1 - q))</tt> (the bucket bounds, so it's wider).
+         *
+         * @return the interval bounds or <tt>null</tt> if the ranks are out of the values.
+         */
+        long[] percentileInterval(double percentile, double z) {
+            long n = histogram.getCount();
+            double q = percentile / 100;
+            double half = z * Math.sqrt(n * q * (1 - q));
+            long lowRank = (long) Math.floor(n * q - half);
+            long highRank = (long) Math.ceil(n * q + half);
+            if (lowRank < 1 || highRank > n) {
+                return null;
+            }
+            return new long[] {
+                Math.max(histogram.getMin(), lowerBounds[bucketOf(lowRank)]),
+                Math.min(histogram.getMax(), upperBounds[bucketOf(highRank)])
+            };
+        }
+
+        private int bucketOf(long rank) {
+            long seen = 0;
+            for (int i = 0; i < size; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i;
+                }
+            }
+            return size - 1;
+        }
+    }
+
+    /**
+     * Regression thresholds.
+     */
+    public static final class Thresholds {
+
+        /**
+         * Significance level 0.01, throughput decrease 5%, percentile increase 10%, allocation
+         * increase 5% and 1 Kb.
+         */
+        public final static Thresholds DEFAULT = new Thresholds(0.01, 0.05, 0.1, 0.05, 1024);
+
+        private final double alpha;
+        private final double throughput;
+        private final double percentile;
+        private final double allocation;
+        private final long allocationBytes;
+
+        /**
+         * @param alpha           significance level of the tests (e.g. 0.01).
+         * @param throughput      relative throughput decrease (e.g. 0.05 for 5%).
+         * @param percentile      relative latency percentiles increase.
+         * @param allocation      relative allocation per iteration increase.
+         * @param allocationBytes absolute allocation per iteration increase (in bytes).
+         */
+        public Thresholds(double alpha,
+                          double throughput,
+                          double percentile,
+                          double allocation,
+                          long allocationBytes) {
+            if (!(alpha > 0 && alpha < 1)) {
+                throw new IllegalArgumentException("Alpha should be within (0, 1).");
+            }
+            if (!(throughput >= 0 && percentile >= 0 && allocation >= 0)
+                || allocationBytes < 0) {
+                throw new IllegalArgumentException("Thresholds can't be negative.");
+            }
+            this.alpha = alpha;
+            this.throughput = throughput;
+            this.percentile = percentile;
+            this.allocation = allocation;
+            this.allocationBytes = allocationBytes;
+        }
+
+        public double getAlpha() {
+            return alpha;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public double getAllocation() {
+            return allocation;
+        }
+
+        public long getAllocationBytes() {
+            return allocationBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                                 "alpha=%s throughput=%s percentile=%s allocation=%s "
+                                 + "allocationBytes=%d",
+                                 alpha, throughput, percentile, allocation, allocationBytes);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.webjer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only store of the {@link PerformanceGauge} measurements.
+ * <p>
+ * Every measurement is a line of tab separated fields: run id (e.g. a commit hash or
+ * <tt>baseline</tt>), time of the append, benchmark name, parameters, warmup iterations,
+ * allocated bytes (over all the iterations, -1 if unknown), GC count, GC time in millis and the
+ * encoded histogram of the iteration times (see {@link LatencyHistogram#encode()}). The lines
+ * starting with <tt>#</tt> are comments. Lines are never rewritten, so the same benchmark with
+ * the same parameters may be appended to a run several times, its measurements are merged then.
+ * <p>
+ * The store is a command as well:
+ * <pre>
+ * java com.webjer.BenchmarkStore &lt;file&gt; list
+ * java com.webjer.BenchmarkStore &lt;file&gt; compare &lt;baseline&gt; &lt;run&gt; [name=value...]
+ * </pre>
+ * where the optional values override the {@link BenchmarkComparison.Thresholds} (<tt>alpha</tt>,
+ * <tt>throughput</tt>, <tt>percentile</tt>, <tt>allocation</tt> and <tt>allocationBytes</tt>).
+ * The comparison exits with status 1 if there are regressions.
+ */
+public final class BenchmarkStore {
+
+    private final static String HEADER = "# runId\ttime\tbenchmark\tparameters\twarmupIterations"
+                                         + "\tallocatedBytes\tgcCount\tgcMillis\thistogram";
+    private final static int FIELDS_COUNT = 9;
+
+    private final Path file;
+
+    public BenchmarkStore(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File can't be null.");
+        }
+        this.file = file;
+    }
+
+    /**
+     * Appends the measurement to the store (creating the file if needed).
+     *
+     * @param runId      run the measurement belongs to.
+     * @param benchmark  benchmark name.
+     * @param parameters benchmark parameters (e.g. <tt>textSize=2000,maxCharsPerLine=80</tt>),
+     *                   empty string if there are no parameters.
+     */
+    public void append(String runId,
+                       String benchmark,
+                       String parameters,
+                       PerformanceGauge.Measurement measurement) throws IOException {
+        if (runId == null || runId.isEmpty() || benchmark == null || parameters == null
+            || measurement == null) {
+            throw new IllegalArgumentException(
+                "Run id and benchmark name can't be empty, parameters and measurement can't be "
+                + "null.");
+        }
+        StringBuilder line = new StringBuilder(256);
+        line.append(escape(runId)).append('\t')
+            .append(Instant.now()).append('\t')
+            .append(escape(benchmark)).append('\t')
+            .append(escape(parameters)).append('\t')
+            .append(measurement.getWarmupIterations()).append('\t')
+            .append(measurement.getAllocatedBytes()).append('\t')
+            .append(measurement.getGcCount()).append('\t')
+            .append(measurement.getGcMillis()).append('\t')
+            .append(measurement.getHistogram().encode()).append('\n');
+        ByteBuffer bytes = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+
+        // The file lock keeps out the other processes (and the header check from racing), but
+        // it's held by the whole VM, so the threads of this one are serialized by the monitor
+        synchronized (BenchmarkStore.class) {
+            try (FileChannel channel = FileChannel.open(file,
+                                                        StandardOpenOption.CREATE,
+                                                        StandardOpenOption.WRITE,
+                                                        StandardOpenOption.APPEND)) {
+                FileLock lock = channel.lock();
+                try {
+                    if (channel.size() == 0) {
+                        writeFully(channel, ByteBuffer.wrap(
+                            (HEADER + '\n').getBytes(StandardCharsets.UTF_8)));
+                    }
+                    writeFully(channel, bytes);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Reads all the records in the order they were appended.
+     */
+    public List<Record> read() throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                if (fields.length != FIELDS_COUNT) {
+                    throw new IllegalArgumentException(
+                        file + ":" + lineNumber + ": " + FIELDS_COUNT + " fields expected.");
+                }
+                try {
+                    records.add(new Record(
+                        unescape(fields[0]),
+                        Instant.parse(fields[1]),
+                        unescape(fields[2]),
+                        unescape(fields[3]),
+                        new PerformanceGauge.Measurement(Integer.parseInt(fields[4]),
+                                                         LatencyHistogram.decode(fields[8]),
+                                                         Long.parseLong(fields[5]),
+                                                         Long.parseLong(fields[6]),
+                                                         Long.parseLong(fields[7]))
+                    ));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": " + e, e);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return ids of the stored runs in the order they first appear.
+     */
+    public Set<String> runIds() throws IOException {
+        Set<String> runIds = new LinkedHashSet<>();
+        for (Record record : read()) {
+            runIds.add(record.getRunId());
+        }
+        return runIds;
+    }
+
+    /**
+     * Compares every benchmark (and parameters set) of the run with the baseline one. Benchmarks
+     * missing in either run are skipped.
+     */
+    public List<BenchmarkComparison> compare(String baselineRunId,
+                                             String runId,
+                                             BenchmarkComparison.Thresholds thresholds)
+        throws IOException {
+        List<Record> records = read();
+        Map<String, Record> baseline = merge(records, baselineRunId);
+        Map<String, Record> run = merge(records, runId);
+        if (baseline.isEmpty() || run.isEmpty()) {
+            throw new IllegalArgumentException("No records of the run "
+                                               + (baseline.isEmpty() ? baselineRunId : runId)
+                                               + " found.");
+        }
+        List<BenchmarkComparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, Record> entry : run.entrySet()) {
+            Record baselineRecord = baseline.get(entry.getKey());
+            if (baselineRecord != null) {
+                comparisons.add(BenchmarkComparison.of(baselineRecord, entry.getValue(),
+                                                       thresholds));
+            }
+        }
+        return comparisons;
+    }
+
+    /**
+     * Merges the run records by the benchmark and parameters.
+     */
+    private static Map<String, Record> merge(List<Record> records, String runId) {
+        Map<String, Record> merged = new LinkedHashMap<>();
+        for (Record record : records) {
+            if (record.getRunId().equals(runId)) {
+                String key = record.getBenchmark() + '\t' + record.getParameters();
+                Record previous = merged.get(key);
+                merged.put(key, previous == null ? record : previous.merge(record));
+            }
+        }
+        return merged;
+    }
+
+    //------------------------------------------------------------------------------------------
+    // Escaping
+    //------------------------------------------------------------------------------------------
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                sb.append(c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    //------------------------------------------------------------------------------------------
+    // Command
+    //------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && "list".equals(args[1])) {
+            list(new BenchmarkStore(Paths.get(args[0])));
+        } else if (args.length >= 4 && "compare".equals(args[1])) {
+            BenchmarkComparison.Thresholds thresholds = parseThresholds(args, 4);
+            List<BenchmarkComparison> comparisons =
+                new BenchmarkStore(Paths.get(args[0])).compare(args[2], args[3], thresholds);
+            int regressions = 0;
+            for (BenchmarkComparison comparison : comparisons) {
+                System.out.println(comparison.toText());
+                if (comparison.isRegression()) {
+                    regressions++;
+                }
+            }
+            System.out.println(comparisons.size() + " benchmarks compared, "
+                               + regressions + " regressed.");
+            if (regressions > 0) {
+                System.exit(1);
+            }
+        } else {
+            System.err.println(
+                "Usage: BenchmarkStore <file> list\n"
+                + "       BenchmarkStore <file> compare <baseline run> <run> [name=value...]\n"
+                + "Thresholds (defaults): " + BenchmarkComparison.Thresholds.DEFAULT);
+            System.exit(2);
+        }
+    }
+
+    private static void list(BenchmarkStore store) throws IOException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Record record : store.read()) {
+            counts.merge(record.getRunId(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue() + " measurements");
+        }
+    }
+
+    private static BenchmarkComparison.Thresholds parseThresholds(String[] args, int from) {
+        BenchmarkComparison.Thresholds defaults = BenchmarkComparison.Thresholds.DEFAULT;
+        double alpha = defaults.getAlpha();
+        double throughput = defaults.getThroughput();
+        double percentile = defaults.getPercentile();
+        double allocation = defaults.getAllocation();
+        long allocationBytes = defaults.getAllocationBytes();
+        for (int i = from; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            String name = separator < 0 ? args[i] : args[i].substring(0, separator);
+            String value = args[i].substring(separator + 1);
+            switch (name) {
+                case "alpha":
+                    alpha = Double.parseDouble(value);
+                    break;
+                case "throughput":
+                    throughput = Double.parseDouble(value);
+                    break;
+                case "percentile":
+                    percentile = Double.parseDouble(value);
+                    break;
+                case "allocation":
+                    allocation = Double.parseDouble(value);
+                    break;
+                case "allocationBytes":
+                    allocationBytes = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown threshold: " + args[i]);
+            }
+        }
+        return new BenchmarkComparison.Thresholds(alpha, throughput, percentile, allocation,
+                                                  allocationBytes);
+    }
+
+    /**
+     * Stored measurement.
+     */
+    public static final class Record {
+
+        private final String runId;
+        private final Instant time;
+        private final String benchmark;
+        private final String parameters;
+        private final PerformanceGauge.Measurement measurement;
+
+        Record(String runId,
+               Instant time,
+               String benchmark,
+               String parameters,
+               PerformanceGauge.Measurement measurement) {
+            this.runId = runId;
+            this.time = time;
+            this.benchmark = benchmark;
+            this.parameters = parameters;
+            this.measurement = measurement;
+        }
+
+        public String getRunId() {
+            return runId;
+        }
+
+        /**
+         * @return time of the (first) append.
+         */
+        public Instant getTime() {
+            return time;
+        }
+
+        public String getBenchmark() {
+            return benchmark;
+        }
+
+        public String getParameters() {
+            return parameters;
+        }
+
+        public PerformanceGauge.Measurement getMeasurement() {
+            return measurement;
+        }
+
+        /**
+         * @return record with the iterations of both records.
+         */
+        Record merge(Record other) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.add(measurement.getHistogram());
+            histogram.add(other.measurement.getHistogram());
+            long allocatedBytes = measurement.getAllocatedBytes();
+            long otherAllocatedBytes = other.measurement.getAllocatedBytes();
+            return new Record(
+                runId,
+                time,
+                benchmark,
+                parameters,
+                new PerformanceGauge.Measurement(
+                    Math.min(measurement.getWarmupIterations(),
+                             other.measurement.getWarmupIterations()),
+                    histogram,
+                    allocatedBytes < 0 || otherAllocatedBytes < 0
+                    ? -1
+                    : allocatedBytes + otherAllocatedBytes,
+                    measurement.getGcCount() + other.measurement.getGcCount(),
+                    measurement.getGcMillis() + other.measurement.getGcMillis()
+                )
+            );
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.webjer;
+
+/**
+ * Histogram of the non-negative values (e.g. latencies in nanos) with a bounded relative error.
+ * <p>
+ * Values below 128 have buckets of their own, every next power of 2 range is split into 64
+ * buckets, so any value is within 1/64 of its bucket bounds and the whole <tt>long</tt> range
+ * takes 3712 buckets. Recording is a few shifts and an increment, nothing is allocated. Not
+ * thread safe.
+ */
+public final class LatencyHistogram {
+
+    private final static int SUB_BUCKET_BITS = 6;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int BUCKETS_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS_COUNT];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Records the value (negative ones are recorded as zeros).
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketIndex(value)]++;
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds all the values recorded by the other histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the lowest value of the bucket.
+     */
+    static long bucketLowerBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+    /**
+     * @return the highest value of the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return ((long) (index - (shift << SUB_BUCKET_BITS) + 1) << shift) - 1;
+    }
+
+    /**
+     * @return amount of the recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the smallest recorded value (zero if there are no values).
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return the largest recorded value (zero if there are no values).
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return mean of the recorded values (exact).
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Finds the value which the given percentage of the recorded values don't exceed.
+     *
+     * @param percentile percentile within <tt>[0, 100]</tt>.
+     * @return the highest value of the percentile bucket (but not more than the max value).
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be within [0, 100].");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, bucketUpperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Encodes the histogram into a single line string (exactly, see {@link #decode(String)}):
+     * <tt>count;sum;min;max;bucket:count,bucket:count,...</tt>
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(count).append(';').append(sum).append(';')
+            .append(getMin()).append(';').append(max).append(';');
+        boolean first = true;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            if (counts[i] > 0) {
+                if (!first) {
+                    sb.append(',');
+                }
+                sb.append(i).append(':').append(counts[i]);
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the histogram encoded by {@link #encode()}.
+     */
+    public static LatencyHistogram decode(String encoded) {
+        String[] parts = encoded.split(";", -1);
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Malformed histogram: " + encoded);
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        try {
+            histogram.count = Long.parseLong(parts[0]);
+            histogram.sum = Long.parseLong(parts[1]);
+            histogram.min = histogram.count == 0 ? Long.MAX_VALUE : Long.parseLong(parts[2]);
+            histogram.max = Long.parseLong(parts[3]);
+            if (!parts[4].isEmpty()) {
+                for (String bucket : parts[4].split(",")) {
+                    int separator = bucket.indexOf(':');
+                    histogram.counts[Integer.parseInt(bucket.substring(0, separator))] =
+                        Long.parseLong(bucket.substring(separator + 1));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed histogram: " + encoded, e);
+        }
+        return histogram;
+    }
+
+    /**
+     * Passes the non-empty buckets to the consumer (in the ascending values order).
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            if (counts[i] > 0) {
+                consumer.accept(bucketLowerBound(i), bucketUpperBound(i), counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Histogram bucket consumer.
+     */
+    public interface BucketConsumer {
+
+        /**
+         * @param lowerBound the lowest value of the bucket.
+         * @param upperBound the highest value of the bucket.
+         * @param count      amount of the values within the bucket.
+         */
+        void accept(long lowerBound, long upperBound, long count);
+    }
+}
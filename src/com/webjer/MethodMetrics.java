@@ -0,0 +1,400 @@
+package com.webjer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Runtime metrics of a method: calls and errors counters, latency and input size histograms.
+ * <p>
+ * The method body is wrapped as follows (the metrics are created once per method, see
+ * {@link Metrics#register(Class, String)}):
+ * <pre>
+ * return METRICS.measure(() -&gt; inputSize, () -&gt; body(...));
+ * </pre>
+ * The wrapper is inlined into the method once it's hot, so the lambdas are not allocated. But
+ * linking the lambdas takes a millisecond or so on the first call, so the methods which should
+ * start fast record the calls explicitly:
+ * <pre>
+ * long startedAt = METRICS.start();
+ * try {
+ *     T result = body(...);
+ *     METRICS.stop(startedAt, inputSize);
+ *     return result;
+ * } catch (Throwable e) {
+ *     METRICS.fail(startedAt);
+ *     throw e;
+ * }
+ * </pre>
+ * When
+ * {@link Metrics} are disabled, the start is a single volatile read and the stop is a comparison.
+ * When they are enabled, the counters are <tt>LongAdder</tt>s (striped, so the threads don't
+ * contend for them) and the histograms are fixed power of 2 buckets incremented atomically
+ * (bucket <tt>i</tt> holds the values within <tt>[2^(i-1), 2^i - 1]</tt>). The calls and errors
+ * are counted exactly, but only one of {@link Metrics#getSamplingRate()} calls (chosen randomly)
+ * is timed and has its input size computed and recorded (after the latency), as reading the clock
+ * twice costs several times more than everything else. So the enabled metrics cost a call about
+ * as much as a <tt>LongAdder</tt> increment.
+ * <p>
+ * The counters are created on the first call made while the metrics are enabled, so the
+ * registration adds next to nothing to the class initialization of the instrumented class.
+ */
+public final class MethodMetrics implements MethodMetricsMBean {
+
+    private final static long NOT_STARTED = Long.MIN_VALUE;
+    private final static long NOT_TIMED = Long.MIN_VALUE + 1;
+    private final static int BUCKETS_COUNT = 64;
+
+    private final String className;
+    private final String methodName;
+    private volatile Counters counters;
+
+    MethodMetrics(String className, String methodName) {
+        this.className = className;
+        this.methodName = methodName;
+    }
+
+    /**
+     * @return simple name of the method class.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return method name with the parameter types, e.g. <tt>wrapText(String,int)</tt>.
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    //------------------------------------------------------------------------------------------
+    // Recording
+    //------------------------------------------------------------------------------------------
+
+    /**
+     * Body of the measured method.
+     *
+     * @param <T> result type (<tt>Void</tt> for the methods which don't return anything).
+     * @param <E> checked exception the body throws (<tt>RuntimeException</tt> if none).
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+
+        T call() throws E;
+    }
+
+    /**
+     * Measures the call without input size (e.g. of a stream).
+     *
+     * @return result of the call.
+     */
+    public <T, E extends Exception> T measure(Call<T, E> call) throws E {
+        long startedAt = start();
+        T result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            fail(startedAt);
+            throw e;
+        }
+        stop(startedAt);
+        return result;
+    }
+
+    /**
+     * Measures the call.
+     *
+     * @param inputSize amount of the input items (chars, strings, etc.), computed only if the call
+     *                  is timed and has succeeded (so the arguments are validated by then).
+     * @return result of the call.
+     */
+    public <T, E extends Exception> T measure(LongSupplier inputSize, Call<T, E> call) throws E {
+        long startedAt = start();
+        T result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            fail(startedAt);
+            throw e;
+        }
+        stop(startedAt, inputSize);
+        return result;
+    }
+
+    /**
+     * Starts the call.
+     *
+     * @return value to pass to {@link #stop(long, long)} or {@link #fail(long)}.
+     */
+    public long start() {
+        if (!Metrics.enabled) {
+            return NOT_STARTED;
+        }
+        if (counters == null) {
+            createCounters();
+        }
+        if ((ThreadLocalRandom.current().nextInt() & Metrics.samplingMask) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * @return true if the call is timed (so its input size is recorded and worth computing).
+     */
+    public static boolean isTimed(long startedAt) {
+        return startedAt != NOT_STARTED && startedAt != NOT_TIMED;
+    }
+
+    /**
+     * Records the successful call without input size (e.g. a stream).
+     */
+    public void stop(long startedAt) {
+        if (startedAt != NOT_STARTED) {
+            Counters counters = this.counters;
+            counters.calls.increment();
+            if (startedAt != NOT_TIMED) {
+                counters.recordLatency(startedAt);
+            }
+        }
+    }
+
+    /**
+     * Records the successful call.
+     *
+     * @param inputSize amount of the input items (chars, strings, etc.).
+     */
+    public void stop(long startedAt, long inputSize) {
+        if (startedAt != NOT_STARTED) {
+            Counters counters = this.counters;
+            counters.calls.increment();
+            if (startedAt != NOT_TIMED) {
+                counters.recordLatency(startedAt);
+                counters.inputSizes.incrementAndGet(bucketIndex(inputSize));
+            }
+        }
+    }
+
+    private void stop(long startedAt, LongSupplier inputSize) {
+        if (startedAt != NOT_STARTED) {
+            Counters counters = this.counters;
+            counters.calls.increment();
+            if (startedAt != NOT_TIMED) {
+                counters.recordLatency(startedAt);
+                counters.inputSizes.incrementAndGet(bucketIndex(inputSize.getAsLong()));
+            }
+        }
+    }
+
+    /**
+     * Records the failed call (the latency and input size of the failed calls aren't recorded).
+     */
+    public void fail(long startedAt) {
+        if (startedAt != NOT_STARTED) {
+            Counters counters = this.counters;
+            counters.calls.increment();
+            counters.errors.increment();
+        }
+    }
+
+    private synchronized void createCounters() {
+        if (counters == null) {
+            counters = new Counters();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * @return the highest value of the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        return index == BUCKETS_COUNT - 1 ? Long.MAX_VALUE : (1L << index) - 1;
+    }
+
+    //------------------------------------------------------------------------------------------
+    // Reading
+    //------------------------------------------------------------------------------------------
+
+    // The counters aren't created by reading: the metrics of a method never called while they are
+    // enabled are all zeros (and the histograms are empty)
+
+    @Override
+    public long getCalls() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : counters.calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : counters.errors.sum();
+    }
+
+    @Override
+    public long getTimedCalls() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : sum(counters.latencies);
+    }
+
+    /**
+     * @return sum of the timed calls latencies.
+     */
+    public long getTimedNanos() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : counters.timedNanos.sum();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        long timedCalls = getTimedCalls();
+        return timedCalls == 0 ? 0 : (double) getTimedNanos() / timedCalls;
+    }
+
+    @Override
+    public long getP50Nanos() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : percentile(counters.latencies, 50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : percentile(counters.latencies, 99);
+    }
+
+    @Override
+    public long getP50InputSize() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : percentile(counters.inputSizes, 50);
+    }
+
+    @Override
+    public long getP99InputSize() {
+        Counters counters = this.counters;
+        return counters == null ? 0 : percentile(counters.inputSizes, 99);
+    }
+
+    @Override
+    public String getLatencyHistogram() {
+        Counters counters = this.counters;
+        return counters == null ? "" : format(counters.latencies);
+    }
+
+    @Override
+    public String getInputSizeHistogram() {
+        Counters counters = this.counters;
+        return counters == null ? "" : format(counters.inputSizes);
+    }
+
+    /**
+     * @return calls within the latency bucket.
+     */
+    long latencyBucketCount(int index) {
+        Counters counters = this.counters;
+        return counters == null ? 0 : counters.latencies.get(index);
+    }
+
+    /**
+     * @return calls within the input size bucket.
+     */
+    long inputSizeBucketCount(int index) {
+        Counters counters = this.counters;
+        return counters == null ? 0 : counters.inputSizes.get(index);
+    }
+
+    static int bucketsCount() {
+        return BUCKETS_COUNT;
+    }
+
+    /**
+     * Resets the metrics (the calls going on meanwhile may be partially recorded).
+     */
+    @Override
+    public void reset() {
+        Counters counters = this.counters;
+        if (counters == null) {
+            return;
+        }
+        counters.calls.reset();
+        counters.errors.reset();
+        counters.timedNanos.reset();
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counters.latencies.set(i, 0);
+            counters.inputSizes.set(i, 0);
+        }
+    }
+
+    private static long sum(AtomicLongArray buckets) {
+        long sum = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            sum += buckets.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * @return the highest value of the percentile bucket (zero if there are no values).
+     */
+    private static long percentile(AtomicLongArray buckets, double percentile) {
+        long[] counts = new long[BUCKETS_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT && count > 0; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return non-empty buckets, e.g. <tt>&lt;=127: 10, &lt;=255: 3</tt>
+     */
+    private static String format(AtomicLongArray buckets) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            long count = buckets.get(i);
+            if (count > 0) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append("<=").append(bucketUpperBound(i)).append(": ").append(count);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return className + '.' + methodName;
+    }
+
+    /**
+     * Counters and histograms of the method.
+     */
+    private final static class Counters {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder timedNanos = new LongAdder();
+        private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS_COUNT);
+        private final AtomicLongArray inputSizes = new AtomicLongArray(BUCKETS_COUNT);
+
+        void recordLatency(long startedAt) {
+            long nanos = System.nanoTime() - startedAt;
+            timedNanos.add(nanos);
+            latencies.incrementAndGet(bucketIndex(nanos));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.webjer;
+
+/**
+ * JMX view of the {@link MethodMetrics}.
+ */
+public interface MethodMetricsMBean {
+
+    /**
+     * @return amount of the calls (including the failed ones).
+     */
+    long getCalls();
+
+    /**
+     * @return amount of the calls which have thrown exceptions.
+     */
+    long getErrors();
+
+    /**
+     * @return amount of the sampled calls the latencies are known of.
+     */
+    long getTimedCalls();
+
+    double getMeanNanos();
+
+    /**
+     * @return upper bound of the median latency bucket.
+     */
+    long getP50Nanos();
+
+    /**
+     * @return upper bound of the 99th percentile latency bucket.
+     */
+    long getP99Nanos();
+
+    /**
+     * @return upper bound of the median input size bucket (of the sampled calls).
+     */
+    long getP50InputSize();
+
+    /**
+     * @return upper bound of the 99th percentile input size bucket (of the sampled calls).
+     */
+    long getP99InputSize();
+
+    /**
+     * @return non-empty latency buckets.
+     */
+    String getLatencyHistogram();
+
+    /**
+     * @return non-empty input size buckets.
+     */
+    String getInputSizeHistogram();
+
+    void reset();
+}
@@ -0,0 +1,309 @@
+package com.webjer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Registry of the {@link MethodMetrics} of the utility classes entry points.
+ * <p>
+ * Metrics are switched on and off at runtime ({@link #setEnabled(boolean)} or the
+ * <tt>Enabled</tt> attribute of <tt>com.webjer:type=Metrics</tt> MBean), the initial mode is set
+ * by <tt>com.webjer.metrics</tt> system property: <tt>off</tt> (default), <tt>jmx</tt> (the MBeans
+ * are registered, but the metrics are off till they are enabled) or <tt>on</tt>. Every method has
+ * an MBean of its own, e.g. <tt>com.webjer:type=MethodMetrics,class=TextUtils,
+ * method="wrapText(String,int)"</tt>, all of them are dumped as plain text by {@link #dump()}.
+ */
+public final class Metrics {
+
+    /**
+     * One of 64 calls is timed by default.
+     */
+    public final static int DEFAULT_SAMPLING_RATE = 64;
+
+    private final static String MODE_PROPERTY = "com.webjer.metrics";
+    private final static String DOMAIN = "com.webjer";
+
+    private final static List<MethodMetrics> METHODS = new CopyOnWriteArrayList<>();
+
+    // Read by every instrumented call
+    static volatile boolean enabled;
+    static volatile int samplingMask = DEFAULT_SAMPLING_RATE - 1;
+
+    private static boolean mbeansRegistered;
+
+    static {
+        // Any other value means off, the utilities shouldn't fail because of the metrics
+        String mode = System.getProperty(MODE_PROPERTY);
+        if ("on".equals(mode) || "jmx".equals(mode)) {
+            enabled = "on".equals(mode);
+            registerMBeans();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Creates the method metrics (its MBean is registered if the MBeans are).
+     *
+     * @param type   class of the method.
+     * @param method method name with the parameter types, e.g. <tt>wrapText(String,int)</tt>.
+     */
+    public static MethodMetrics register(Class<?> type, String method) {
+        if (type == null || method == null) {
+            throw new IllegalArgumentException("Type and method can't be null.");
+        }
+        MethodMetrics metrics = new MethodMetrics(type.getSimpleName(), method);
+        synchronized (Metrics.class) {
+            METHODS.add(metrics);
+            if (mbeansRegistered) {
+                Jmx.registerMethodMBean(metrics);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return all the method metrics in the order of registration.
+     */
+    public static List<MethodMetrics> methods() {
+        return Collections.unmodifiableList(METHODS);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @return one of how many calls is timed.
+     */
+    public static int getSamplingRate() {
+        return samplingMask + 1;
+    }
+
+    /**
+     * @param samplingRate one of how many calls is timed, a power of 2 (1 to time every call).
+     */
+    public static void setSamplingRate(int samplingRate) {
+        if (samplingRate < 1 || Integer.bitCount(samplingRate) != 1) {
+            throw new IllegalArgumentException("Sampling rate should be a power of 2.");
+        }
+        samplingMask = samplingRate - 1;
+    }
+
+    /**
+     * Resets all the method metrics.
+     */
+    public static void reset() {
+        for (MethodMetrics metrics : METHODS) {
+            metrics.reset();
+        }
+    }
+
+    //------------------------------------------------------------------------------------------
+    // JMX
+    //------------------------------------------------------------------------------------------
+
+    /**
+     * Registers the control and the method metrics MBeans in the platform MBean server (once).
+     */
+    public static synchronized void registerMBeans() {
+        if (mbeansRegistered) {
+            return;
+        }
+        Jmx.registerControlMBean();
+        for (MethodMetrics metrics : METHODS) {
+            Jmx.registerMethodMBean(metrics);
+        }
+        mbeansRegistered = true;
+    }
+
+    //------------------------------------------------------------------------------------------
+    // Text exposition
+    //------------------------------------------------------------------------------------------
+
+    /**
+     * @return all the metrics in the Prometheus text exposition format.
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder(4096);
+        try {
+            dump(sb);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes all the metrics in the Prometheus text exposition format: calls and errors counters,
+     * latency (of the sampled calls) and input size histograms (the buckets below the lowest and
+     * above the highest non-empty ones are omitted).
+     */
+    public static void dump(Appendable out) throws IOException {
+        out.append("# webjer metrics ").append(enabled ? "enabled" : "disabled")
+            .append(", one of ").append(String.valueOf(getSamplingRate()))
+            .append(" calls is timed\n");
+        out.append("# HELP webjer_calls_total Calls including the failed ones.\n")
+            .append("# TYPE webjer_calls_total counter\n");
+        for (MethodMetrics metrics : METHODS) {
+            appendSample(out, "webjer_calls_total", metrics, null, metrics.getCalls());
+        }
+        out.append("# HELP webjer_errors_total Calls which have thrown exceptions.\n")
+            .append("# TYPE webjer_errors_total counter\n");
+        for (MethodMetrics metrics : METHODS) {
+            appendSample(out, "webjer_errors_total", metrics, null, metrics.getErrors());
+        }
+        out.append("# HELP webjer_latency_nanos Latency of the sampled calls.\n")
+            .append("# TYPE webjer_latency_nanos histogram\n");
+        for (MethodMetrics metrics : METHODS) {
+            long count = appendBuckets(out, "webjer_latency_nanos", metrics, true);
+            appendSample(out, "webjer_latency_nanos_sum", metrics, null,
+                         metrics.getTimedNanos());
+            appendSample(out, "webjer_latency_nanos_count", metrics, null, count);
+        }
+        out.append("# HELP webjer_input_size Input size of the sampled calls.\n")
+            .append("# TYPE webjer_input_size histogram\n");
+        for (MethodMetrics metrics : METHODS) {
+            long count = appendBuckets(out, "webjer_input_size", metrics, false);
+            appendSample(out, "webjer_input_size_count", metrics, null, count);
+        }
+    }
+
+    /**
+     * Appends the cumulative buckets.
+     *
+     * @return total count.
+     */
+    private static long appendBuckets(Appendable out,
+                                      String name,
+                                      MethodMetrics metrics,
+                                      boolean latency) throws IOException {
+        int bucketsCount = MethodMetrics.bucketsCount();
+        long[] counts = new long[bucketsCount];
+        int lowest = bucketsCount;
+        int highest = -1;
+        for (int i = 0; i < bucketsCount; i++) {
+            counts[i] = latency ? metrics.latencyBucketCount(i) : metrics.inputSizeBucketCount(i);
+            if (counts[i] > 0) {
+                lowest = Math.min(lowest, i);
+                highest = i;
+            }
+        }
+        long cumulative = 0;
+        for (int i = lowest; i <= highest && i < bucketsCount - 1; i++) {
+            cumulative += counts[i];
+            appendSample(out, name + "_bucket", metrics,
+                         String.valueOf(MethodMetrics.bucketUpperBound(i)), cumulative);
+        }
+        if (highest == bucketsCount - 1) {
+            cumulative += counts[highest];
+        }
+        appendSample(out, name + "_bucket", metrics, "+Inf", cumulative);
+        return cumulative;
+    }
+
+    private static void appendSample(Appendable out,
+                                     String name,
+                                     MethodMetrics metrics,
+                                     String le,
+                                     long value) throws IOException {
+        out.append(name)
+            .append("{class=\"").append(metrics.getClassName())
+            .append("\",method=\"").append(metrics.getMethodName()).append('"');
+        if (le != null) {
+            out.append(",le=\"").append(le).append('"');
+        }
+        out.append("} ").append(String.valueOf(value)).append('\n');
+    }
+
+    /**
+     * MBeans registration (a class of its own, so the JMX classes are only loaded if the MBeans
+     * are registered).
+     */
+    private static final class Jmx {
+
+        static void registerControlMBean() {
+            try {
+                registerMBean(new StandardMBean(new Control(), MetricsMBean.class),
+                              new ObjectName(DOMAIN + ":type=Metrics"));
+            } catch (JMException e) {
+                throw new IllegalStateException("Metrics MBean can't be registered.", e);
+            }
+        }
+
+        static void registerMethodMBean(MethodMetrics metrics) {
+            ObjectName name;
+            try {
+                name = new ObjectName(DOMAIN + ":type=MethodMetrics,class="
+                                      + metrics.getClassName()
+                                      + ",method=" + ObjectName.quote(metrics.getMethodName()));
+            } catch (JMException e) {
+                throw new IllegalArgumentException("Wrong method name: " + metrics, e);
+            }
+            registerMBean(metrics, name);
+        }
+
+        private static void registerMBean(Object mbean, ObjectName name) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(name)) {
+                    // E.g. the class has been loaded by another class loader
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(mbean, name);
+            } catch (JMException e) {
+                throw new IllegalStateException("MBean " + name + " can't be registered.", e);
+            }
+        }
+    }
+
+    /**
+     * Control MBean.
+     */
+    private static final class Control implements MetricsMBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public int getSamplingRate() {
+            return Metrics.getSamplingRate();
+        }
+
+        @Override
+        public void setSamplingRate(int samplingRate) {
+            Metrics.setSamplingRate(samplingRate);
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
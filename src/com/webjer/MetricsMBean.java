@@ -0,0 +1,22 @@
+package com.webjer;
+
+/**
+ * JMX control of the {@link Metrics}.
+ */
+public interface MetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getSamplingRate();
+
+    void setSamplingRate(int samplingRate);
+
+    /**
+     * @return plain text exposition of all the metrics.
+     */
+    String dump();
+
+    void reset();
+}
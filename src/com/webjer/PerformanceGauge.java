@@ -1,63 +1,313 @@
 package com.webjer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
 /**
- * Naive execution time/memory measuring class.
+ * Execution time/memory measuring class.
+ * <p>
+ * The callback is run for the warmup iterations first (so it gets compiled, its caches filled,
+ * etc.), then every measurement iteration is timed with <tt>System.nanoTime()</tt> and recorded
+ * into a {@link LatencyHistogram}. Memory is measured as the bytes allocated by all the threads
+ * (exactly, as the JVM counts them per thread) over the measurement iterations rather than the
+ * heap usage (which depends on when GC happens), GC count and time are taken from the collectors.
+ * <p>
+ * Results are printed as text or as JSON (set <tt>com.webjer.gauge.format</tt> system property
+ * to <tt>json</tt>). If <tt>com.webjer.gauge.store</tt> system property is set, they are also
+ * appended to that {@link BenchmarkStore} file as the run <tt>com.webjer.gauge.run</tt> (the JVM
+ * start time by default) with the <tt>com.webjer.gauge.parameters</tt> (empty by default). The
+ * benchmark is named by the calling method and the message, e.g. <tt>TextUtilsRunner.
+ * performHeavyTest: Completed in parallel</tt>.
  */
 public class PerformanceGauge {
 
-    private Runnable callback;
+    private final static String FORMAT_PROPERTY = "com.webjer.gauge.format";
+    private final static String STORE_PROPERTY = "com.webjer.gauge.store";
+    private final static String RUN_PROPERTY = "com.webjer.gauge.run";
+    private final static String PARAMETERS_PROPERTY = "com.webjer.gauge.parameters";
+
+    private final Runnable callback;
+    private final int warmupIterations;
+    private final int measurementIterations;
 
+    /**
+     * Creates a gauge running the callback once without warmup (for the long running callbacks).
+     */
     public PerformanceGauge(Runnable callback) {
+        this(callback, 0, 1);
+    }
+
+    /**
+     * Creates a gauge.
+     *
+     * @param callback              code to measure.
+     * @param warmupIterations      amount of the callback runs before the measurement.
+     * @param measurementIterations amount of the measured callback runs.
+     */
+    public PerformanceGauge(Runnable callback, int warmupIterations, int measurementIterations) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback can't be null.");
+        }
+        if (warmupIterations < 0 || measurementIterations < 1) {
+            throw new IllegalArgumentException(
+                "Warmup iterations can't be negative and measurement ones should be positive.");
+        }
         this.callback = callback;
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
     }
 
     /**
-     * Measure and return execution time.
+     * Measure and return execution time and memory.
      *
-     * @return time in millis.
+     * @return measurement results.
      */
-    public SampledValues measure() {
-        long memFreeBefore = Runtime.getRuntime().freeMemory();
-        long memTotalBefore = Runtime.getRuntime().totalMemory();
-        long startedAt = System.currentTimeMillis();
-        callback.run();
-        long totalTimeMs = System.currentTimeMillis() - startedAt;
-        long totalMemBytes =
-            (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory())
-            - (memTotalBefore - memFreeBefore);
-        return new SampledValues(totalTimeMs, totalMemBytes);
+    public Measurement measure() {
+        for (int i = 0; i < warmupIterations; i++) {
+            callback.run();
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        long allocatedBefore = allocatedBytes();
+        long gcCountBefore = 0;
+        long gcMillisBefore = 0;
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCountBefore += Math.max(0, collector.getCollectionCount());
+            gcMillisBefore += Math.max(0, collector.getCollectionTime());
+        }
+        for (int i = 0; i < measurementIterations; i++) {
+            long startedAt = System.nanoTime();
+            callback.run();
+            histogram.record(System.nanoTime() - startedAt);
+        }
+        long gcCount = -gcCountBefore;
+        long gcMillis = -gcMillisBefore;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        return new Measurement(warmupIterations, histogram, allocated, gcCount, gcMillis);
+    }
+
+    /**
+     * Sums the bytes allocated by all the live threads (the threads which die during the
+     * measurement are missed, but the pool threads don't).
+     *
+     * @return allocated bytes or -1 if the JVM doesn't count them.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported()
+            || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : sunThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // Negative for the threads which have died meanwhile
+            total += Math.max(0, bytes);
+        }
+        return total;
     }
 
     /**
-     * Measure and print execution time results.
+     * Measure and print execution results.
      */
     public void measureAndPrint(String message) {
-        SampledValues values = measure();
+        Measurement measurement = measure();
         System.out.println(
-            String.format("%s in %d ms, (%d Mb)",
-                          message, values.getConsumedMillis(), values.getConsumedBytes() / 1048576L)
+            "json".equals(System.getProperty(FORMAT_PROPERTY))
+            ? measurement.toJson(message)
+            : measurement.toText(message)
         );
+        String store = System.getProperty(STORE_PROPERTY);
+        if (store != null) {
+            String runId = System.getProperty(RUN_PROPERTY);
+            if (runId == null) {
+                runId = Instant.ofEpochMilli(ManagementFactory.getRuntimeMXBean().getStartTime())
+                    .toString();
+            }
+            try {
+                new BenchmarkStore(Paths.get(store)).append(
+                    runId,
+                    callerName() + ": " + message,
+                    System.getProperty(PARAMETERS_PROPERTY, ""),
+                    measurement
+                );
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return <tt>Class.method</tt> of the first caller outside of this class.
+     */
+    private static String callerName() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (!element.getClassName().equals(PerformanceGauge.class.getName())) {
+                String className = element.getClassName();
+                return className.substring(className.lastIndexOf('.') + 1)
+                       + '.' + element.getMethodName();
+            }
+        }
+        return PerformanceGauge.class.getSimpleName();
     }
 
     public void measureAndPrint() {
         measureAndPrint("Completed");
     }
 
-    private class SampledValues {
-        private long consumedMillis;
-        private long consumedBytes;
+    /**
+     * Measurement results.
+     */
+    public static final class Measurement {
+
+        private final int warmupIterations;
+        private final LatencyHistogram histogram;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        Measurement(int warmupIterations,
+                    LatencyHistogram histogram,
+                    long allocatedBytes,
+                    long gcCount,
+                    long gcMillis) {
+            this.warmupIterations = warmupIterations;
+            this.histogram = histogram;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        /**
+         * @return bytes allocated by all the threads over all the iterations or -1 if they aren't
+         * counted.
+         */
+        long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public int getWarmupIterations() {
+            return warmupIterations;
+        }
+
+        public long getIterations() {
+            return histogram.getCount();
+        }
+
+        /**
+         * @return iteration times in nanos.
+         */
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * @return bytes allocated by all the threads per iteration or -1 if they aren't counted.
+         */
+        public long getAllocatedBytesPerIteration() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / histogram.getCount();
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        /**
+         * @return human readable results, e.g. <tt>Completed in 1372.4 ms (p50 1370.1, p99
+         * 1380.2, p999 1380.2, max 1380.2 ms, 3 iterations), 375.0 Mb allocated, 2 GCs in 35
+         * ms</tt> (the allocation is per iteration, the units depend on the magnitude).
+         */
+        public String toText(String message) {
+            long p50 = histogram.getPercentile(50);
+            double scale = p50 >= 10_000_000 ? 1e6 : p50 >= 10_000 ? 1e3 : 1;
+            String unit = scale == 1e6 ? "ms" : scale == 1e3 ? "us" : "ns";
+            return String.format(
+                Locale.ROOT,
+                "%s in %.1f %s (p50 %.1f, p99 %.1f, p999 %.1f, max %.1f %s, %d iterations), "
+                + "%s allocated, %d GCs in %d ms",
+                message,
+                histogram.getMean() / scale,
+                unit,
+                p50 / scale,
+                histogram.getPercentile(99) / scale,
+                histogram.getPercentile(99.9) / scale,
+                histogram.getMax() / scale,
+                unit,
+                histogram.getCount(),
+                formatBytes(getAllocatedBytesPerIteration()),
+                gcCount,
+                gcMillis
+            );
+        }
 
-        public SampledValues(long consumedMillis, long consumedBytes) {
-            this.consumedMillis = consumedMillis;
-            this.consumedBytes = consumedBytes;
+        private static String formatBytes(long bytes) {
+            if (bytes < 0) {
+                return "unknown amount";
+            }
+            if (bytes < 1024) {
+                return bytes + " bytes";
+            }
+            return bytes < 1048576
+                   ? String.format(Locale.ROOT, "%.1f Kb", bytes / 1024.0)
+                   : String.format(Locale.ROOT, "%.1f Mb", bytes / 1048576.0);
         }
 
-        public long getConsumedMillis() {
-            return consumedMillis;
+        /**
+         * @return results as a single line JSON object (times are in nanos).
+         */
+        public String toJson(String name) {
+            return String.format(
+                Locale.ROOT,
+                "{\"name\":\"%s\",\"warmupIterations\":%d,\"iterations\":%d,\"meanNanos\":%.1f,"
+                + "\"minNanos\":%d,\"p50Nanos\":%d,\"p99Nanos\":%d,\"p999Nanos\":%d,"
+                + "\"maxNanos\":%d,\"allocatedBytesPerIteration\":%d,\"gcCount\":%d,"
+                + "\"gcMillis\":%d}",
+                escapeJson(name),
+                warmupIterations,
+                histogram.getCount(),
+                histogram.getMean(),
+                histogram.getMin(),
+                histogram.getPercentile(50),
+                histogram.getPercentile(99),
+                histogram.getPercentile(99.9),
+                histogram.getMax(),
+                getAllocatedBytesPerIteration(),
+                gcCount,
+                gcMillis
+            );
         }
 
-        public long getConsumedBytes() {
-            return consumedBytes;
+        private static String escapeJson(String s) {
+            StringBuilder sb = new StringBuilder(s.length() + 8);
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < ' ') {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
         }
     }
 }
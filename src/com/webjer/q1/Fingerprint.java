@@ -0,0 +1,149 @@
+package com.webjer.q1;
+
+/**
+ * Order-independent and duplicates-insensitive 128-bit fingerprint of a string set.
+ * <p>
+ * Every distinct item is hashed by two independent 64-bit hashes (FNV-1a and a rotate-multiply
+ * hash with other constants), each one is mixed with a finalizer of its own and summed up into its
+ * 64-bit lane. The items are deduplicated by both hashes, so two items are taken for one only if
+ * they collide in all the 128 bits. Since addition is commutative and each distinct item is
+ * accounted only once, equivalent sets always have equal fingerprints. Different sets
+ * have equal fingerprints only by (very unlikely) collision, so equal fingerprints still need
+ * an exact verification while different ones prove that the sets aren't equivalent.
+ */
+public final class Fingerprint {
+
+    private final static long NULL_ITEM_HASH = 0x5851F42D4C957F2DL;
+    private final static long NULL_ITEM_LOW_HASH = 0x14057B7EF767814FL;
+    private final static long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private final static long FNV_PRIME = 0x100000001B3L;
+    private final static long LOW_HASH_SEED = 0x9E3779B97F4A7C15L;
+    private final static long LOW_HASH_CHAR_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+    private final static long LOW_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final long high;
+    private final long low;
+
+    private Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Calculates the fingerprint of the set.
+     *
+     * @param set array of strings (order and duplicates are disregarded, nulls are allowed).
+     * @return fingerprint of the set.
+     */
+    public static Fingerprint of(String[] set) {
+        if (set == null) {
+            throw new IllegalArgumentException("Non-null \"set\" value should be passed.");
+        }
+
+        // Deduplicate hash pairs within a primitive open-addressing table (0 marks empty slot)
+        //-------------------------------------------------------------------------------------
+        int itemsLimit = Math.min(Math.max(8, set.length), 1 << 28);
+        int capacity = Integer.highestOneBit(itemsLimit * 2 - 1) << 1;
+        int mask = capacity - 1;
+        // The pair of a slot is kept side by side: hash at 2 * slot, low hash at 2 * slot + 1
+        long[] seenHashes = new long[capacity * 2];
+
+        long high = 0;
+        long low = 0;
+        for (String item : set) {
+            long hash;
+            long lowHash;
+            if (item == null) {
+                hash = NULL_ITEM_HASH;
+                lowHash = NULL_ITEM_LOW_HASH;
+            } else {
+                // Both hashes in a single pass over the chars: hash64 and the rotate-multiply one
+                hash = FNV_OFFSET_BASIS;
+                lowHash = LOW_HASH_SEED ^ item.length();
+                for (int i = 0; i < item.length(); i++) {
+                    char c = item.charAt(i);
+                    hash = (hash ^ c) * FNV_PRIME;
+                    lowHash = Long.rotateLeft(lowHash ^ (c * LOW_HASH_CHAR_MULTIPLIER), 31)
+                              * LOW_HASH_MULTIPLIER;
+                }
+                if (hash == 0) {
+                    hash = NULL_ITEM_HASH + 1;
+                }
+            }
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (seenHashes[slot << 1] != 0
+                   && (seenHashes[slot << 1] != hash || seenHashes[(slot << 1) + 1] != lowHash)) {
+                slot = (slot + 1) & mask;
+            }
+            if (seenHashes[slot << 1] == 0) {
+                seenHashes[slot << 1] = hash;
+                seenHashes[(slot << 1) + 1] = lowHash;
+                high += mixHigh(hash);
+                low += mixLow(lowHash);
+            }
+        }
+        return new Fingerprint(high, low);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Fingerprint)) {
+            return false;
+        }
+        Fingerprint that = (Fingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the string chars, never returns 0.
+     */
+    static long hash64(String item) {
+        if (item == null) {
+            return NULL_ITEM_HASH;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < item.length(); i++) {
+            hash = (hash ^ item.charAt(i)) * FNV_PRIME;
+        }
+        return hash == 0 ? NULL_ITEM_HASH + 1 : hash;
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    static long mixHigh(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * MurmurHash3 fmix64 finalizer.
+     */
+    private static long mixLow(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
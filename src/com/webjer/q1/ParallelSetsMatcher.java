@@ -0,0 +1,186 @@
+package com.webjer.q1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fork-join implementation of the string sets identity check.
+ * <p>
+ * The first set is indexed into a concurrent map (each distinct item gets a dense ordinal), then
+ * every other set is split into chunks which are checked simultaneously. Each chunk marks the
+ * ordinals it has met in a per-set lock-free bitmap, so no per-set collection is ever built.
+ * The first chunk which meets an unknown item raises the shared mismatch flag and all the other
+ * chunks (of all sets) stop as soon as they notice it.
+ */
+final class ParallelSetsMatcher {
+
+    /**
+     * Amount of items processed by a single leaf task.
+     */
+    private final static int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * How often (in items) the leaf task checks whether the work has been cancelled.
+     */
+    private final static int CANCELLATION_CHECK_MASK = (1 << 10) - 1;
+
+    /**
+     * {@link ConcurrentHashMap} doesn't accept nulls, but the sets may contain them.
+     */
+    private final static Object NULL_ITEM = new Object();
+
+    private final String[][] sets;
+    private final Map<Object, Integer> masterIndex;
+    private final AtomicInteger masterSize = new AtomicInteger();
+    private final AtomicBoolean mismatchFound = new AtomicBoolean();
+
+    private ParallelSetsMatcher(String[][] sets) {
+        this.sets = sets;
+        this.masterIndex = new ConcurrentHashMap<>(Math.max(16, sets[0].length));
+    }
+
+    /**
+     * Checks passed string sets (at least two of them) for being identical using the given pool.
+     */
+    static boolean allStringSetsIdentical(String[][] sets, ForkJoinPool pool) {
+        return pool.invoke(new ParallelSetsMatcher(sets).new RootTask());
+    }
+
+    private static Object keyOf(String item) {
+        return item == null ? NULL_ITEM : item;
+    }
+
+    /**
+     * Runs both phases (master set indexing and sample sets checking) within the pool.
+     */
+    @SuppressWarnings("serial") // The tasks are never serialized
+    private final class RootTask extends RecursiveTask<Boolean> {
+
+        @Override
+        protected Boolean compute() {
+            // Index the master set
+            //----------------------
+            new IndexingTask(0, sets[0].length).invoke();
+            int distinctCount = masterSize.get();
+
+            // Check all the sample sets at once
+            //-----------------------------------
+            AtomicLongArray[] seenBitmaps = new AtomicLongArray[sets.length];
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(sets.length - 1);
+            for (int i = 1; i < sets.length; i++) {
+                seenBitmaps[i] = new AtomicLongArray((distinctCount + 63) >>> 6);
+                tasks.add(new CheckingTask(i, seenBitmaps[i], 0, sets[i].length));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            if (mismatchFound.get()) {
+                return false;
+            }
+
+            // All items are from the master set, so it's enough to compare distinct items count
+            //------------------------------------------------------------------------------------
+            for (int i = 1; i < sets.length; i++) {
+                AtomicLongArray bitmap = seenBitmaps[i];
+                int seenCount = 0;
+                for (int w = 0; w < bitmap.length(); w++) {
+                    seenCount += Long.bitCount(bitmap.get(w));
+                }
+                if (seenCount != distinctCount) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Assigns dense ordinals to the distinct items of the first set.
+     */
+    @SuppressWarnings("serial")
+    private final class IndexingTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        IndexingTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IndexingTask(from, middle), new IndexingTask(middle, to));
+                return;
+            }
+            String[] master = sets[0];
+            for (int i = from; i < to; i++) {
+                // The mapping function is applied atomically and only once per absent key
+                masterIndex.computeIfAbsent(keyOf(master[i]), k -> masterSize.getAndIncrement());
+            }
+        }
+    }
+
+    /**
+     * Checks a chunk of a sample set against the master index.
+     */
+    @SuppressWarnings("serial")
+    private final class CheckingTask extends RecursiveAction {
+
+        private final int setIndex;
+        private final AtomicLongArray seenBitmap;
+        private final int from;
+        private final int to;
+
+        CheckingTask(int setIndex, AtomicLongArray seenBitmap, int from, int to) {
+            this.setIndex = setIndex;
+            this.seenBitmap = seenBitmap;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mismatchFound.get()) {
+                return;
+            }
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CheckingTask(setIndex, seenBitmap, from, middle),
+                          new CheckingTask(setIndex, seenBitmap, middle, to));
+                return;
+            }
+            String[] sample = sets[setIndex];
+            for (int i = from; i < to; i++) {
+                if ((i & CANCELLATION_CHECK_MASK) == 0 && mismatchFound.get()) {
+                    return;
+                }
+                Integer ordinal = masterIndex.get(keyOf(sample[i]));
+                if (ordinal == null) {
+                    mismatchFound.set(true);
+                    return;
+                }
+                markSeen(ordinal);
+            }
+        }
+
+        private void markSeen(int ordinal) {
+            int wordIndex = ordinal >>> 6;
+            long bit = 1L << ordinal;
+            long word = seenBitmap.get(wordIndex);
+            // Most of the items are duplicates in the heavy cases, so avoid CAS when possible
+            while ((word & bit) == 0 && !seenBitmap.compareAndSet(wordIndex, word, word | bit)) {
+                word = seenBitmap.get(wordIndex);
+            }
+        }
+    }
+}
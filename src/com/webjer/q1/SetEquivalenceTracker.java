@@ -0,0 +1,181 @@
+package com.webjer.q1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutable string sets with constant time "all sets are identical" check.
+ * <p>
+ * Each set keeps a reference count per item (so duplicates are allowed, an item leaves the set
+ * when its last copy is removed) and a 64-bit digest: the sum of mixed hashes of its distinct items
+ * (the same value as {@link Fingerprint#getHigh()} of the set). The tracker also flags every pair
+ * of the neighbouring sets (set <tt>i</tt> and set <tt>i + 1</tt>) which digests differ and counts
+ * the flagged pairs, so the sets are identical when there are none. A change of a set digest only
+ * updates the flags of its two pairs.
+ * <p>
+ * The tracker is thread safe and lock-free: reference counts are updated by the atomic operations
+ * of {@link ConcurrentHashMap} (retried on conflicts, so writers of different items don't meet at
+ * all), digests are atomic sums, the flags are compared and set and the flagged pairs are counted
+ * by a striped counter. A flag set from the digests which have changed meanwhile is checked again,
+ * so the flags are exact once the mutations are over. {@link #allIdentical()} is weakly consistent
+ * while being called concurrently with mutations. Since digests are hashes, different sets are
+ * reported identical with a probability of about 2<sup>-64</sup>.
+ */
+public final class SetEquivalenceTracker {
+
+    /**
+     * {@link ConcurrentHashMap} doesn't accept nulls, but the sets may contain them.
+     */
+    private final static Object NULL_ITEM = new Object();
+
+    private final List<ConcurrentHashMap<Object, Integer>> refCounts;
+    private final AtomicLongArray digests;
+    // Pair i is flagged (1) if the digests of the sets i and i + 1 differ
+    private final AtomicIntegerArray pairMismatches;
+    private final LongAdder mismatchedPairsCount = new LongAdder();
+
+    /**
+     * Creates a tracker of the given amount of (initially empty) sets.
+     *
+     * @param setsCount amount of sets.
+     */
+    public SetEquivalenceTracker(int setsCount) {
+        if (setsCount <= 0) {
+            throw new IllegalArgumentException("Tracker should contain at least one \"set\".");
+        }
+        refCounts = new ArrayList<>(setsCount);
+        for (int i = 0; i < setsCount; i++) {
+            refCounts.add(new ConcurrentHashMap<>());
+        }
+        digests = new AtomicLongArray(setsCount);
+        pairMismatches = new AtomicIntegerArray(setsCount - 1);
+    }
+
+    /**
+     * Adds a copy of the item to the set.
+     *
+     * @param setIndex index of the set.
+     * @param item     item to add (may be null).
+     */
+    public void add(int setIndex, String item) {
+        ConcurrentHashMap<Object, Integer> counts = refCountsOf(setIndex);
+        Object key = keyOf(item);
+        while (true) {
+            Integer count = counts.putIfAbsent(key, 1);
+            if (count == null) {
+                // The item has just joined the set (only one of the racing writers gets here)
+                changeDigest(setIndex, Fingerprint.mixHigh(Fingerprint.hash64(item)));
+                return;
+            }
+            if (counts.replace(key, count, count + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a copy of the item from the set.
+     *
+     * @param setIndex index of the set.
+     * @param item     item to remove (may be null).
+     * @return false if the set doesn't contain the item.
+     */
+    public boolean remove(int setIndex, String item) {
+        ConcurrentHashMap<Object, Integer> counts = refCountsOf(setIndex);
+        Object key = keyOf(item);
+        while (true) {
+            Integer count = counts.get(key);
+            if (count == null) {
+                return false;
+            }
+            if (count == 1) {
+                if (counts.remove(key, count)) {
+                    // The last copy of the item has left the set
+                    changeDigest(setIndex, -Fingerprint.mixHigh(Fingerprint.hash64(item)));
+                    return true;
+                }
+            } else if (counts.replace(key, count, count - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the set contains the item.
+     *
+     * @param setIndex index of the set.
+     * @param item     item to check (may be null).
+     * @return true if the set contains at least one copy of the item.
+     */
+    public boolean contains(int setIndex, String item) {
+        return refCountsOf(setIndex).containsKey(keyOf(item));
+    }
+
+    /**
+     * Checks tracked sets for being identical disregarding duplicates.
+     *
+     * @return true if all the sets have same digest.
+     */
+    public boolean allIdentical() {
+        return mismatchedPairsCount.sum() == 0;
+    }
+
+    /**
+     * @return amount of tracked sets.
+     */
+    public int getSetsCount() {
+        return refCounts.size();
+    }
+
+    private ConcurrentHashMap<Object, Integer> refCountsOf(int setIndex) {
+        if (setIndex < 0 || setIndex >= refCounts.size()) {
+            throw new IllegalArgumentException("Wrong set index specified.");
+        }
+        return refCounts.get(setIndex);
+    }
+
+    /**
+     * Adds the delta to the set digest and updates the flags of the pairs the set belongs to (the
+     * digest is a sum, so the concurrent changes may be added in any order).
+     */
+    private void changeDigest(int setIndex, long delta) {
+        digests.getAndAdd(setIndex, delta);
+        if (setIndex > 0) {
+            updatePairMismatch(setIndex - 1);
+        }
+        if (setIndex < digests.length() - 1) {
+            updatePairMismatch(setIndex);
+        }
+    }
+
+    /**
+     * Sets the pair flag according to the digests of its sets, till the digests don't change while
+     * it's being set. So a flag set by a concurrent writer from the outdated digests is corrected
+     * either by this writer or by the one which has changed the digests.
+     */
+    private void updatePairMismatch(int pair) {
+        while (true) {
+            long first = digests.get(pair);
+            long second = digests.get(pair + 1);
+            int mismatch = first == second ? 0 : 1;
+            int flag = pairMismatches.get(pair);
+            if (flag != mismatch) {
+                if (!pairMismatches.compareAndSet(pair, flag, mismatch)) {
+                    continue;
+                }
+                mismatchedPairsCount.add(mismatch - flag);
+            }
+            if (digests.get(pair) == first && digests.get(pair + 1) == second) {
+                return;
+            }
+        }
+    }
+
+    private static Object keyOf(String item) {
+        return item == null ? NULL_ITEM : item;
+    }
+}
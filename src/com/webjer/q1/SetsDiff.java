@@ -0,0 +1,79 @@
+package com.webjer.q1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the string sets comparison which explains why the sets differ.
+ * <p>
+ * For every set it contains the items which it lacks comparing to the union of all the sets and
+ * the items which no other set has. Items are listed in order of their first appearance.
+ */
+public final class SetsDiff {
+
+    private final List<List<String>> missingItems;
+    private final List<List<String>> uniqueItems;
+
+    SetsDiff(List<List<String>> missingItems, List<List<String>> uniqueItems) {
+        this.missingItems = missingItems;
+        this.uniqueItems = uniqueItems;
+    }
+
+    /**
+     * Creates a difference report of identical sets.
+     */
+    static SetsDiff identical(int setsCount) {
+        List<String> empty = Collections.emptyList();
+        return new SetsDiff(Collections.nCopies(setsCount, empty),
+                            Collections.nCopies(setsCount, empty));
+    }
+
+    /**
+     * @return true if all the sets are identical (there are no missing items).
+     */
+    public boolean isIdentical() {
+        for (List<String> missing : missingItems) {
+            if (!missing.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return amount of compared sets.
+     */
+    public int getSetsCount() {
+        return missingItems.size();
+    }
+
+    /**
+     * @param setIndex index of the set.
+     * @return unmodifiable list of items which other sets have but the set lacks.
+     */
+    public List<String> getMissingItems(int setIndex) {
+        return missingItems.get(setIndex);
+    }
+
+    /**
+     * @param setIndex index of the set.
+     * @return unmodifiable list of items which only this set has.
+     */
+    public List<String> getUniqueItems(int setIndex) {
+        return uniqueItems.get(setIndex);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < missingItems.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('#').append(i)
+                .append(" missing: ").append(missingItems.get(i))
+                .append(" unique: ").append(uniqueItems.get(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package com.webjer.q1;
+
+import java.util.Arrays;
+
+/**
+ * Reusable allocation-free string sets identity checker.
+ * <p>
+ * The master set is kept in a flat open-addressing table (strings and their hashes in two parallel
+ * arrays, linear probing), the items met in every sample set are tracked with a bitset over
+ * the table slots. All the arrays are retained between the calls and are only grown when a bigger
+ * input arrives, so a steady-state call doesn't allocate anything.
+ * <p>
+ * The instance is not thread safe, use one engine per thread.
+ */
+public final class SetsEquivalenceEngine {
+
+    private final static int MIN_CAPACITY = 16;
+
+    private String[] table = new String[MIN_CAPACITY];
+    private int[] hashes = new int[MIN_CAPACITY];
+    private long[] seenSlots = new long[(MIN_CAPACITY + 63) >>> 6];
+
+    /**
+     * Slots mask of the currently used part of the table (used capacity is always a power of two).
+     */
+    private int mask;
+    private int masterSize;
+    private boolean masterContainsNull;
+
+    /**
+     * Checks passed string sets for being identical.
+     *
+     * @param sets array of arrays containing strings.
+     * @return true if each array contains same set of string items disregarding duplicates.
+     * @see SetsUtils#allStringSetsIdentical(String[][])
+     */
+    public boolean allStringSetsIdentical(String[][] sets) {
+
+        if (sets == null) {
+            throw new IllegalArgumentException("Non-null \"sets\" value should be passed.");
+        } else if (sets.length == 0) {
+            throw new IllegalArgumentException("\"Sets\" should contain at least one \"set\".");
+        } else if (sets.length == 1) {
+            return true;
+        }
+
+        try {
+            buildMasterTable(sets[0]);
+            for (int i = 1; i < sets.length; i++) {
+                if (!matchesMasterTable(sets[i])) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            // Don't keep the caller's strings reachable between the calls
+            Arrays.fill(table, 0, mask + 1, null);
+        }
+    }
+
+    /**
+     * Fills the table with distinct items of the master set.
+     */
+    private void buildMasterTable(String[] master) {
+        ensureCapacity(master.length);
+        masterSize = 0;
+        masterContainsNull = false;
+
+        for (String item : master) {
+            if (item == null) {
+                masterContainsNull = true;
+                continue;
+            }
+            int hash = item.hashCode();
+            int slot = spread(hash) & mask;
+            while (table[slot] != null) {
+                if (hashes[slot] == hash && table[slot].equals(item)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == null) {
+                table[slot] = item;
+                hashes[slot] = hash;
+                masterSize++;
+            }
+        }
+    }
+
+    /**
+     * Checks that sample set contains only master items and contains all of them.
+     */
+    private boolean matchesMasterTable(String[] sample) {
+        Arrays.fill(seenSlots, 0, ((mask + 1) + 63) >>> 6, 0L);
+        int seenCount = 0;
+        boolean nullSeen = false;
+
+        for (String item : sample) {
+            if (item == null) {
+                if (!masterContainsNull) {
+                    return false;
+                }
+                nullSeen = true;
+                continue;
+            }
+            int slot = findSlot(item);
+            if (slot < 0) {
+                return false;
+            }
+            long bit = 1L << slot;
+            int wordIndex = slot >>> 6;
+            if ((seenSlots[wordIndex] & bit) == 0) {
+                seenSlots[wordIndex] |= bit;
+                seenCount++;
+            }
+        }
+        return seenCount == masterSize && nullSeen == masterContainsNull;
+    }
+
+    /**
+     * Looks the item up in the master table.
+     *
+     * @return slot index or -1 if there's no such item.
+     */
+    private int findSlot(String item) {
+        int hash = item.hashCode();
+        int slot = spread(hash) & mask;
+        String slotItem;
+        while ((slotItem = table[slot]) != null) {
+            if (hashes[slot] == hash && slotItem.equals(item)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Makes the used part of the table large enough to keep load factor at most 0.5 for the given
+     * amount of items. The arrays are reallocated only when they are too small.
+     */
+    private void ensureCapacity(int maxItemsCount) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < maxItemsCount * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        if (capacity > table.length) {
+            table = new String[capacity];
+            hashes = new int[capacity];
+            seenSlots = new long[(capacity + 63) >>> 6];
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Mixes the higher bits of the hash into the lower ones (which are used for slot selection).
+     */
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
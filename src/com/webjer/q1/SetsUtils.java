@@ -1,11 +1,39 @@
 package com.webjer.q1;
 
+import com.webjer.MethodMetrics;
+import com.webjer.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public final class SetsUtils {
 
+    // Entry points metrics (see Metrics)
+    private final static MethodMetrics ALL_STRING_SETS_IDENTICAL_METRICS =
+        Metrics.register(SetsUtils.class, "allStringSetsIdentical(String[][])");
+    private final static MethodMetrics ALL_STRING_SETS_IDENTICAL_PARALLEL_METRICS =
+        Metrics.register(SetsUtils.class,
+                         "allStringSetsIdenticalParallel(String[][],ForkJoinPool)");
+    private final static MethodMetrics ALL_ITERATED_SETS_IDENTICAL_METRICS =
+        Metrics.register(SetsUtils.class, "allStringSetsIdentical(List)");
+    private final static MethodMetrics ALL_FILE_SETS_IDENTICAL_METRICS =
+        Metrics.register(SetsUtils.class, "allFileSetsIdentical(Path[])");
+    private final static MethodMetrics DIFF_METRICS =
+        Metrics.register(SetsUtils.class, "diff(String[][])");
+    private final static MethodMetrics GROUP_EQUIVALENT_SETS_METRICS =
+        Metrics.register(SetsUtils.class, "groupEquivalentSets(String[][])");
+
     private SetsUtils() {
     }
 
@@ -15,17 +43,30 @@ public final class SetsUtils {
      * @return true if each array contains same set of string items disregarding duplicates.
      */
     public static boolean allStringSetsIdentical(String[][] sets) {
+        return ALL_STRING_SETS_IDENTICAL_METRICS.measure(() -> itemsCount(sets),
+                                                         () -> checkIdentical(sets));
+    }
 
-        if (sets == null) {
-            throw new IllegalArgumentException("Non-null \"sets\" value should be passed.");
-        } else if (sets.length == 0) {
-            throw new IllegalArgumentException("\"Sets\" should contain at least one \"set\".");
-        } else if (sets.length == 1) {
+    private static boolean checkIdentical(String[][] sets) {
+
+        if (containsSingleSet(sets)) {
             return true;
         }
 
         // Do the identity check for two or more sets only
 
+        // Fast reject on different fingerprints (no set objects are composed for that). It costs
+        // about as much as the set objects, so it's only worth it for three or more sets: two sets
+        // are rejected by the sample scan below as soon as a foreign item is met
+        if (sets.length > 2) {
+            Fingerprint masterFingerprint = Fingerprint.of(sets[0]);
+            for (int i = 1; i < sets.length; i++) {
+                if (!masterFingerprint.equals(Fingerprint.of(sets[i]))) {
+                    return false;
+                }
+            }
+        }
+
         // Compose set objects
         String[] firstArray = sets[0];
         Set<String> masterSet = new HashSet<>(firstArray.length);
@@ -49,4 +90,254 @@ public final class SetsUtils {
 
         return true;
     }
+
+    /**
+     * Checks passed string sets for being identical utilizing all the threads of the given pool.
+     * All the sets (and the chunks of the large sets) are checked simultaneously, the remaining
+     * work is cancelled as soon as any mismatch is found.
+     *
+     * @param sets array of arrays containing strings.
+     * @param pool fork-join pool to run the check within.
+     * @return true if each array contains same set of string items disregarding duplicates.
+     */
+    public static boolean allStringSetsIdenticalParallel(String[][] sets, ForkJoinPool pool) {
+        return ALL_STRING_SETS_IDENTICAL_PARALLEL_METRICS.measure(
+            () -> itemsCount(sets), () -> checkIdenticalParallel(sets, pool));
+    }
+
+    private static boolean checkIdenticalParallel(String[][] sets, ForkJoinPool pool) {
+
+        if (pool == null) {
+            throw new IllegalArgumentException("Non-null \"pool\" value should be passed.");
+        }
+        if (containsSingleSet(sets)) {
+            return true;
+        }
+        return ParallelSetsMatcher.allStringSetsIdentical(sets, pool);
+    }
+
+    /**
+     * Checks string sets provided by the iterators for being identical. Sets are consumed in
+     * a streaming manner, only distinct items of the first set are retained.
+     *
+     * @param sources iterators over the sets items.
+     * @return true if each source provides same set of string items disregarding duplicates.
+     */
+    public static boolean allStringSetsIdentical(
+        List<? extends Iterator<? extends CharSequence>> sources) {
+        // The amount of the items isn't known, so the input size is the amount of the sets
+        return ALL_ITERATED_SETS_IDENTICAL_METRICS.measure(() -> sources.size(),
+                                                           () -> checkIteratedIdentical(sources));
+    }
+
+    private static boolean checkIteratedIdentical(
+        List<? extends Iterator<? extends CharSequence>> sources) {
+
+        if (sources == null) {
+            throw new IllegalArgumentException("Non-null \"sources\" value should be passed.");
+        } else if (sources.isEmpty()) {
+            throw new IllegalArgumentException("\"Sources\" should contain at least one source.");
+        } else if (sources.size() == 1) {
+            return true;
+        }
+        return StreamingSetsMatcher.matchIterators(sources);
+    }
+
+    /**
+     * Checks string sets stored in newline-delimited UTF-8 files (one item per line, empty lines
+     * are ignored) for being identical. Files are memory-mapped and the items are compared as raw
+     * bytes, no strings are created. Only distinct items of the first file are copied to memory.
+     *
+     * @param files files containing sets.
+     * @return true if each file contains same set of lines disregarding duplicates.
+     * @throws IOException if any file can't be read.
+     */
+    public static boolean allFileSetsIdentical(Path... files) throws IOException {
+        return ALL_FILE_SETS_IDENTICAL_METRICS.measure(() -> files.length,
+                                                       () -> checkFilesIdentical(files));
+    }
+
+    private static boolean checkFilesIdentical(Path... files) throws IOException {
+
+        if (files == null) {
+            throw new IllegalArgumentException("Non-null \"files\" value should be passed.");
+        } else if (files.length == 0) {
+            throw new IllegalArgumentException("\"Files\" should contain at least one file.");
+        } else if (files.length == 1) {
+            return true;
+        }
+        return StreamingSetsMatcher.matchFiles(Arrays.asList(files));
+    }
+
+    /**
+     * Compares passed string sets and explains why they differ: for every set reports items
+     * which it lacks comparing to the union of all the sets and items which no other set has.
+     * The sets are scanned once into a table of items to bitmasks of sets containing them.
+     * Identical sets are detected by the fingerprints check first, so no table is built for them.
+     *
+     * @param sets array of arrays containing strings.
+     * @return difference report.
+     */
+    public static SetsDiff diff(String[][] sets) {
+        return DIFF_METRICS.measure(() -> itemsCount(sets), () -> buildDiff(sets));
+    }
+
+    private static SetsDiff buildDiff(String[][] sets) {
+
+        if (containsSingleSet(sets)) {
+            return SetsDiff.identical(1);
+        }
+
+        // Fast path for identical sets
+        //------------------------------
+        Fingerprint masterFingerprint = Fingerprint.of(sets[0]);
+        boolean sameFingerprints = true;
+        for (int i = 1; i < sets.length && sameFingerprints; i++) {
+            sameFingerprints = masterFingerprint.equals(Fingerprint.of(sets[i]));
+        }
+        if (sameFingerprints && new SetsEquivalenceEngine().allStringSetsIdentical(sets)) {
+            return SetsDiff.identical(sets.length);
+        }
+
+        // Build items to sets bitmasks table (masks are stored flat, maskWords longs per item)
+        //--------------------------------------------------------------------------------------
+        int maskWords = (sets.length + 63) >>> 6;
+        Map<String, Integer> ordinals = new HashMap<>();
+        List<String> items = new ArrayList<>();
+        long[] masks = new long[16 * maskWords];
+        for (int i = 0; i < sets.length; i++) {
+            long setBit = 1L << i;
+            int setWord = i >>> 6;
+            for (String item : sets[i]) {
+                Integer ordinal = ordinals.get(item);
+                if (ordinal == null) {
+                    ordinal = items.size();
+                    ordinals.put(item, ordinal);
+                    items.add(item);
+                    if ((ordinal + 1) * maskWords > masks.length) {
+                        masks = Arrays.copyOf(masks, masks.length * 2);
+                    }
+                }
+                masks[ordinal * maskWords + setWord] |= setBit;
+            }
+        }
+
+        // Collect missing and unique items
+        //----------------------------------
+        List<List<String>> missingItems = new ArrayList<>(sets.length);
+        List<List<String>> uniqueItems = new ArrayList<>(sets.length);
+        for (int i = 0; i < sets.length; i++) {
+            missingItems.add(new ArrayList<>());
+            uniqueItems.add(new ArrayList<>());
+        }
+        for (int ordinal = 0; ordinal < items.size(); ordinal++) {
+            int maskOffset = ordinal * maskWords;
+            int containingSetsCount = 0;
+            for (int w = 0; w < maskWords; w++) {
+                containingSetsCount += Long.bitCount(masks[maskOffset + w]);
+            }
+            if (containingSetsCount == sets.length) {
+                continue;
+            }
+            String item = items.get(ordinal);
+            for (int i = 0; i < sets.length; i++) {
+                boolean contained = (masks[maskOffset + (i >>> 6)] & (1L << i)) != 0;
+                if (!contained) {
+                    missingItems.get(i).add(item);
+                } else if (containingSetsCount == 1) {
+                    uniqueItems.get(i).add(item);
+                }
+            }
+        }
+        for (int i = 0; i < sets.length; i++) {
+            missingItems.set(i, Collections.unmodifiableList(missingItems.get(i)));
+            uniqueItems.set(i, Collections.unmodifiableList(uniqueItems.get(i)));
+        }
+        return new SetsDiff(missingItems, uniqueItems);
+    }
+
+    /**
+     * Splits passed string sets into equivalence classes. The sets are bucketed by their
+     * {@link Fingerprint}s first, so the exact comparison is performed only within a bucket.
+     *
+     * @param sets array of arrays containing strings.
+     * @return equivalence classes (indexes of the equivalent sets in ascending order), ordered by
+     * the index of the first set of the class.
+     */
+    public static List<int[]> groupEquivalentSets(String[][] sets) {
+        return GROUP_EQUIVALENT_SETS_METRICS.measure(() -> itemsCount(sets), () -> groupSets(sets));
+    }
+
+    private static List<int[]> groupSets(String[][] sets) {
+
+        validate(sets);
+
+        // Bucket sets by fingerprints
+        //-----------------------------
+        Map<Fingerprint, List<Integer>> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < sets.length; i++) {
+            buckets.computeIfAbsent(Fingerprint.of(sets[i]), k -> new ArrayList<>()).add(i);
+        }
+
+        // Verify sets within buckets (split the bucket in case of fingerprints collision)
+        //---------------------------------------------------------------------------------
+        SetsEquivalenceEngine engine = new SetsEquivalenceEngine();
+        String[][] pair = new String[2][];
+        List<int[]> classes = new ArrayList<>(buckets.size());
+        for (List<Integer> bucket : buckets.values()) {
+            while (!bucket.isEmpty()) {
+                List<Integer> equivalent = new ArrayList<>(bucket.size());
+                List<Integer> rest = new ArrayList<>();
+                pair[0] = sets[bucket.get(0)];
+                equivalent.add(bucket.get(0));
+                for (int j = 1; j < bucket.size(); j++) {
+                    pair[1] = sets[bucket.get(j)];
+                    if (engine.allStringSetsIdentical(pair)) {
+                        equivalent.add(bucket.get(j));
+                    } else {
+                        rest.add(bucket.get(j));
+                    }
+                }
+                classes.add(equivalent.stream().mapToInt(Integer::intValue).toArray());
+                bucket = rest;
+            }
+        }
+        classes.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return classes;
+    }
+
+    /**
+     * Counts the items of all the sets for the metrics.
+     */
+    private static long itemsCount(String[][] sets) {
+        long count = 0;
+        for (String[] set : sets) {
+            count += set == null ? 0 : set.length;
+        }
+        return count;
+    }
+
+    /**
+     * Validates passed string sets.
+     *
+     * @param sets array of arrays containing strings.
+     * @return true if there's nothing to compare (only one set is passed).
+     */
+    private static boolean containsSingleSet(String[][] sets) {
+        validate(sets);
+        return sets.length == 1;
+    }
+
+    /**
+     * Validates passed string sets.
+     *
+     * @param sets array of arrays containing strings.
+     */
+    private static void validate(String[][] sets) {
+        if (sets == null) {
+            throw new IllegalArgumentException("Non-null \"sets\" value should be passed.");
+        } else if (sets.length == 0) {
+            throw new IllegalArgumentException("\"Sets\" should contain at least one \"set\".");
+        }
+    }
 }
@@ -3,6 +3,8 @@ package com.webjer.q1;
 import com.webjer.PerformanceGauge;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
@@ -10,6 +12,9 @@ import java.util.stream.IntStream;
  */
 public class SetsUtilsRunner {
 
+    private final static int WARMUP_ITERATIONS = 1;
+    private final static int MEASUREMENT_ITERATIONS = 3;
+
     public static void main(String[] args) {
 
         performSimpleTest(
@@ -59,18 +64,81 @@ public class SetsUtilsRunner {
             }
         );
 
+        performGroupingTest(
+            new String[][]{
+                {"a", "b"},
+                {"c"},
+                {"b", "b", "a"},
+                {"c", "c"},
+                {"a"},
+                {"b", "a"}
+            }
+        );
+
+        performDiffTest(
+            new String[][]{
+                {"a", "b", "c"},
+                {"b", "a", "a"},
+                {"c", "b", "d"}
+            }
+        );
+
+        performTrackerTest();
+
         // performHeavyTest();
     }
 
     private static void performSimpleTest(String[][] sets) {
         System.out.println(
-            String.format("%b \t->  %s",
+            String.format("%b (parallel: %b, engine: %b, streaming: %b) \t->  %s",
                           SetsUtils.allStringSetsIdentical(sets),
+                          SetsUtils.allStringSetsIdenticalParallel(sets, ForkJoinPool.commonPool()),
+                          new SetsEquivalenceEngine().allStringSetsIdentical(sets),
+                          SetsUtils.allStringSetsIdentical(
+                              Arrays.stream(sets)
+                                  .map(set -> Arrays.asList(set).iterator())
+                                  .collect(Collectors.toList())
+                          ),
                           Arrays.deepToString(sets)
             )
         );
     }
 
+    private static void performGroupingTest(String[][] sets) {
+        System.out.println(
+            String.format("%s \t->  %s",
+                          SetsUtils.groupEquivalentSets(sets).stream()
+                              .map(Arrays::toString)
+                              .collect(Collectors.joining(", ")),
+                          Arrays.deepToString(sets)
+            )
+        );
+    }
+
+    private static void performDiffTest(String[][] sets) {
+        System.out.println(
+            String.format("%s \t->  %s",
+                          SetsUtils.diff(sets),
+                          Arrays.deepToString(sets)
+            )
+        );
+    }
+
+    private static void performTrackerTest() {
+        SetEquivalenceTracker tracker = new SetEquivalenceTracker(2);
+        tracker.add(0, "a");
+        tracker.add(0, "b");
+        tracker.add(1, "b");
+        System.out.println(String.format("%b \t->  tracker [a, b], [b]", tracker.allIdentical()));
+        tracker.add(1, "a");
+        tracker.add(1, "a");
+        System.out.println(String.format("%b \t->  tracker [a, b], [b, a, a]",
+                                         tracker.allIdentical()));
+        tracker.remove(0, "a");
+        System.out.println(String.format("%b \t->  tracker [b], [b, a, a]",
+                                         tracker.allIdentical()));
+    }
+
     private static void performHeavyTest() {
         // Let's check the execution time
         System.out.print("\nNow generating quite bit of source data for heavy load test. "
@@ -99,7 +167,24 @@ public class SetsUtilsRunner {
         System.out.println("Done. Running the test... ");
 
         new PerformanceGauge(
-            () -> SetsUtils.allStringSetsIdentical(sets)
+            () -> SetsUtils.allStringSetsIdentical(sets),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
         ).measureAndPrint();
+
+        new PerformanceGauge(
+            () -> SetsUtils.allStringSetsIdenticalParallel(sets, ForkJoinPool.commonPool()),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
+        ).measureAndPrint("Completed in parallel");
+
+        // The engine allocates its tables on the first call only, so the warmup reveals that
+        // the next calls allocate nothing
+        SetsEquivalenceEngine engine = new SetsEquivalenceEngine();
+        new PerformanceGauge(
+            () -> engine.allStringSetsIdentical(sets),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
+        ).measureAndPrint("Completed by reused engine");
     }
 }
@@ -0,0 +1,420 @@
+package com.webjer.q1;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streaming implementation of the string sets identity check.
+ * <p>
+ * Sets are consumed one by one and item by item, only the distinct items of the first set are
+ * retained (in a table of their ordinals), so the memory grows with the amount of distinct
+ * master items only rather than with the total input size. The items met in each of the other
+ * sets are tracked with a bitset over the master ordinals.
+ */
+final class StreamingSetsMatcher {
+
+    /**
+     * Maximal size of a single memory-mapped file region. Regions always end on a line boundary,
+     * so a single line can't be longer than this.
+     */
+    private final static int MAX_REGION_SIZE = 1 << 30;
+
+    /**
+     * Maximal total size of the distinct master lines (the maximal array size of most VMs).
+     */
+    private final static int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    private final static byte NEWLINE_BYTE = '\n';
+    private final static byte CARRIAGE_RETURN_BYTE = '\r';
+
+    private StreamingSetsMatcher() {
+    }
+
+    /**
+     * Checks the sets provided by the iterators (at least two of them) for being identical.
+     */
+    static boolean matchIterators(List<? extends Iterator<? extends CharSequence>> sources) {
+        CharSequencesTable table = new CharSequencesTable();
+
+        Iterator<? extends CharSequence> master = sources.get(0);
+        while (master.hasNext()) {
+            table.current = master.next();
+            table.findOrAdd(table.hashOfCurrent());
+        }
+        table.current = null;
+
+        for (int i = 1; i < sources.size(); i++) {
+            table.resetSeen();
+            Iterator<? extends CharSequence> sample = sources.get(i);
+            while (sample.hasNext()) {
+                table.current = sample.next();
+                int ordinal = table.find(table.hashOfCurrent());
+                if (ordinal < 0) {
+                    return false;
+                }
+                table.markSeen(ordinal);
+            }
+            if (!table.allSeen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the sets stored in newline-delimited UTF-8 files (at least two of them) for being
+     * identical. Files are memory-mapped and the items are compared as raw byte ranges, no strings
+     * are created. Empty lines are ignored, a trailing <tt>'\r'</tt> is not a part of an item.
+     */
+    static boolean matchFiles(List<Path> files) throws IOException {
+        MappedLinesTable table = new MappedLinesTable();
+
+        // Index the master file (distinct lines are copied, so the regions aren't retained)
+        //-----------------------------------------------------------------------------------
+        forEachLine(files.get(0), (region, lineStart, lineEnd) -> {
+            if (table.setCurrent(region, lineStart, lineEnd)) {
+                table.findOrAdd(table.hashOfCurrent());
+            }
+            return true;
+        });
+
+        // Check the other files
+        //-----------------------
+        LineConsumer sampleLineConsumer = (region, lineStart, lineEnd) -> {
+            if (!table.setCurrent(region, lineStart, lineEnd)) {
+                return true;
+            }
+            int ordinal = table.find(table.hashOfCurrent());
+            if (ordinal < 0) {
+                return false;
+            }
+            table.markSeen(ordinal);
+            return true;
+        };
+        for (int i = 1; i < files.size(); i++) {
+            table.resetSeen();
+            if (!forEachLine(files.get(i), sampleLineConsumer) || !table.allSeen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the file region by region and passes every line to the consumer.
+     *
+     * @return false if the consumer has stopped the iteration.
+     */
+    private static boolean forEachLine(Path file, LineConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long fileSize = channel.size();
+            while (position < fileSize) {
+                MappedByteBuffer region = mapRegion(channel, position, fileSize);
+                int lineStart = 0;
+                int regionEnd = region.limit();
+                while (lineStart < regionEnd) {
+                    int lineEnd = lineEnd(region, lineStart, regionEnd);
+                    if (!consumer.accept(region, lineStart, lineEnd)) {
+                        return false;
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                position += regionEnd;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the next file region which ends on a line boundary (or at the end of file).
+     */
+    private static MappedByteBuffer mapRegion(FileChannel channel,
+                                              long position,
+                                              long fileSize) throws IOException {
+        long size = Math.min(MAX_REGION_SIZE, fileSize - position);
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        if (position + size == fileSize) {
+            return region;
+        }
+        int lastNewline = (int) size - 1;
+        while (lastNewline >= 0 && region.get(lastNewline) != NEWLINE_BYTE) {
+            lastNewline--;
+        }
+        if (lastNewline < 0) {
+            throw new IllegalArgumentException(
+                "Lines longer than " + MAX_REGION_SIZE + " bytes are not supported.");
+        }
+        region.limit(lastNewline + 1);
+        return region;
+    }
+
+    /**
+     * Seeks for the newline byte.
+     *
+     * @return position of the newline byte or region end if there's no one.
+     */
+    private static int lineEnd(MappedByteBuffer region, int lineStart, int regionEnd) {
+        int pos = lineStart;
+        while (pos < regionEnd && region.get(pos) != NEWLINE_BYTE) {
+            pos++;
+        }
+        return pos;
+    }
+
+    @FunctionalInterface
+    private interface LineConsumer {
+
+        /**
+         * @return false to stop the iteration.
+         */
+        boolean accept(MappedByteBuffer region, int lineStart, int lineEnd);
+    }
+
+    /**
+     * Open-addressing table of distinct items ordinals. Items themselves are stored by subclasses,
+     * the item being looked up or added is the "current" one of the subclass.
+     */
+    private abstract static class DistinctItemsTable {
+
+        private int[] slots = new int[16];
+        private int[] slotHashes = new int[16];
+        private long[] seenOrdinals = new long[1];
+        private int size;
+        private int seenCount;
+
+        /**
+         * Checks whether the item with the given ordinal equals to the current item.
+         */
+        abstract boolean currentEquals(int ordinal);
+
+        /**
+         * Stores the current item under the given ordinal.
+         */
+        abstract void storeCurrent(int ordinal);
+
+        /**
+         * Looks the current item up.
+         *
+         * @return ordinal of the item or -1 if there's no such item.
+         */
+        final int find(int hash) {
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            int slotValue;
+            while ((slotValue = slots[slot]) != 0) {
+                if (slotHashes[slot] == hash && currentEquals(slotValue - 1)) {
+                    return slotValue - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Adds the current item unless it's already present.
+         */
+        final void findOrAdd(int hash) {
+            if (find(hash) >= 0) {
+                return;
+            }
+            int ordinal = size++;
+            storeCurrent(ordinal);
+            putSlot(ordinal, hash);
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+        }
+
+        final void resetSeen() {
+            int words = (size + 63) >>> 6;
+            if (seenOrdinals.length < words) {
+                seenOrdinals = new long[words];
+            } else {
+                Arrays.fill(seenOrdinals, 0, words, 0L);
+            }
+            seenCount = 0;
+        }
+
+        final void markSeen(int ordinal) {
+            long bit = 1L << ordinal;
+            int wordIndex = ordinal >>> 6;
+            if ((seenOrdinals[wordIndex] & bit) == 0) {
+                seenOrdinals[wordIndex] |= bit;
+                seenCount++;
+            }
+        }
+
+        final boolean allSeen() {
+            return seenCount == size;
+        }
+
+        private void putSlot(int ordinal, int hash) {
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = ordinal + 1;
+            slotHashes[slot] = hash;
+        }
+
+        private void rehash() {
+            int[] oldSlots = slots;
+            int[] oldHashes = slotHashes;
+            slots = new int[oldSlots.length * 2];
+            slotHashes = new int[oldSlots.length * 2];
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    putSlot(oldSlots[i] - 1, oldHashes[i]);
+                }
+            }
+        }
+
+        /**
+         * Mixes the higher bits of the hash into the lower ones (which are used for slot
+         * selection).
+         */
+        static int spread(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * Keeps distinct master items as strings (the passed char sequences may be mutable buffers).
+     */
+    private final static class CharSequencesTable extends DistinctItemsTable {
+
+        private String[] items = new String[16];
+        private CharSequence current;
+
+        int hashOfCurrent() {
+            if (current == null) {
+                return 0;
+            }
+            if (current instanceof String) {
+                // String caches its hash code
+                return spread(current.hashCode());
+            }
+            // Same as String.hashCode()
+            int hash = 0;
+            for (int i = 0; i < current.length(); i++) {
+                hash = 31 * hash + current.charAt(i);
+            }
+            return spread(hash);
+        }
+
+        @Override
+        boolean currentEquals(int ordinal) {
+            String item = items[ordinal];
+            if (item == null || current == null) {
+                return item == null && current == null;
+            }
+            if (item.length() != current.length()) {
+                return false;
+            }
+            for (int i = 0; i < item.length(); i++) {
+                if (item.charAt(i) != current.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void storeCurrent(int ordinal) {
+            if (ordinal == items.length) {
+                items = Arrays.copyOf(items, items.length * 2);
+            }
+            items[ordinal] = current == null ? null : current.toString();
+        }
+    }
+
+    /**
+     * Keeps distinct master items as byte ranges of a compact arena (the lines are copied from the
+     * mapped regions, so a region can be unmapped once it's read).
+     */
+    private final static class MappedLinesTable extends DistinctItemsTable {
+
+        private byte[] arena = new byte[1 << 12];
+        private int arenaSize;
+        private int[] itemOffsets = new int[16];
+        private int[] itemLengths = new int[16];
+
+        private MappedByteBuffer currentRegion;
+        private int currentOffset;
+        private int currentLength;
+
+        /**
+         * Makes the line the current item.
+         *
+         * @return false if the line is empty and should be skipped.
+         */
+        boolean setCurrent(MappedByteBuffer region, int lineStart, int lineEnd) {
+            if (lineEnd > lineStart && region.get(lineEnd - 1) == CARRIAGE_RETURN_BYTE) {
+                lineEnd--;
+            }
+            currentRegion = region;
+            currentOffset = lineStart;
+            currentLength = lineEnd - lineStart;
+            return currentLength > 0;
+        }
+
+        /**
+         * 32-bit FNV-1a hash of the current item bytes.
+         */
+        int hashOfCurrent() {
+            int hash = 0x811C9DC5;
+            int end = currentOffset + currentLength;
+            for (int i = currentOffset; i < end; i++) {
+                hash = (hash ^ (currentRegion.get(i) & 0xFF)) * 0x01000193;
+            }
+            return spread(hash);
+        }
+
+        @Override
+        boolean currentEquals(int ordinal) {
+            if (itemLengths[ordinal] != currentLength) {
+                return false;
+            }
+            int offset = itemOffsets[ordinal];
+            for (int i = 0; i < currentLength; i++) {
+                if (arena[offset + i] != currentRegion.get(currentOffset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void storeCurrent(int ordinal) {
+            if (ordinal == itemOffsets.length) {
+                itemOffsets = Arrays.copyOf(itemOffsets, ordinal * 2);
+                itemLengths = Arrays.copyOf(itemLengths, ordinal * 2);
+            }
+            if (currentLength > arena.length - arenaSize) {
+                long required = (long) arenaSize + currentLength;
+                if (required > MAX_ARENA_SIZE) {
+                    throw new IllegalArgumentException(
+                        "Distinct master lines longer than " + MAX_ARENA_SIZE
+                        + " bytes in total are not supported.");
+                }
+                arena = Arrays.copyOf(arena, (int) Math.min(MAX_ARENA_SIZE,
+                                                            Math.max(required, arena.length * 2L)));
+            }
+            for (int i = 0; i < currentLength; i++) {
+                arena[arenaSize + i] = currentRegion.get(currentOffset + i);
+            }
+            itemOffsets[ordinal] = arenaSize;
+            itemLengths[ordinal] = currentLength;
+            arenaSize += currentLength;
+        }
+    }
+}
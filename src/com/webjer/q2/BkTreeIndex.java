@@ -0,0 +1,139 @@
+package com.webjer.q2;
+
+/**
+ * BK-tree over a fixed list of keys for the closest key lookup by Levenshtein distance.
+ * <p>
+ * Keys are compared case-insensitively disregarding surrounding whitespaces (inner whitespace
+ * runs are treated as a single space). The tree is stored in flat arrays (children are linked
+ * lists of siblings), the triangle inequality lets the lookup skip all the subtrees which can't
+ * contain a key within the distance bound, so only a small part of the keys is ever compared.
+ */
+final class BkTreeIndex {
+
+    private final char[][] keys;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] edgeDistance;
+
+    /**
+     * @param keys keys to index (index of the key is its ordinal).
+     */
+    BkTreeIndex(String[] keys) {
+        int count = keys.length;
+        this.keys = new char[count][];
+        firstChild = new int[count];
+        nextSibling = new int[count];
+        edgeDistance = new int[count];
+        for (int i = 0; i < count; i++) {
+            this.keys[i] = fold(keys[i]);
+            firstChild[i] = -1;
+            nextSibling[i] = -1;
+            if (i > 0) {
+                insert(i);
+            }
+        }
+    }
+
+    /**
+     * Looks up the closest key.
+     *
+     * @param query       value to look up.
+     * @param maxDistance maximal acceptable distance.
+     * @return ordinal of the closest key in the lower 32 bits and the distance in the upper ones
+     * or -1 if there's no key within the bound. Ties are resolved in favour of the lesser ordinal.
+     */
+    long findClosest(CharSequence query, int maxDistance) {
+        if (keys.length == 0 || maxDistance < 0) {
+            return -1;
+        }
+        char[] folded = fold(query);
+        int[] previousRow = new int[folded.length + 1];
+        int[] currentRow = new int[folded.length + 1];
+        int[] stack = new int[keys.length];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        int bestOrdinal = -1;
+        int bestDistance = maxDistance;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            int distance = distance(keys[node], folded, previousRow, currentRow);
+            if (distance < bestDistance
+                || (distance == bestDistance && (bestOrdinal < 0 || node < bestOrdinal))) {
+                bestOrdinal = node;
+                bestDistance = distance;
+            }
+            // Only children within [distance - bound, distance + bound] may contain closer keys
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(edgeDistance[child] - distance) <= bestDistance) {
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+        return bestOrdinal < 0 ? -1 : ((long) bestDistance << 32) | bestOrdinal;
+    }
+
+    private void insert(int key) {
+        int node = 0;
+        while (true) {
+            int distance = distance(keys[node], keys[key],
+                                    new int[keys[key].length + 1], new int[keys[key].length + 1]);
+            int child = firstChild[node];
+            while (child >= 0 && edgeDistance[child] != distance) {
+                child = nextSibling[child];
+            }
+            if (child < 0) {
+                edgeDistance[key] = distance;
+                nextSibling[key] = firstChild[node];
+                firstChild[node] = key;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Levenshtein distance (exact one, the tree pruning relies on it).
+     *
+     * @param previousRow work row of at least <tt>b.length + 1</tt> length.
+     * @param currentRow  work row of at least <tt>b.length + 1</tt> length.
+     */
+    private static int distance(char[] a, char[] b, int[] previousRow, int[] currentRow) {
+        for (int j = 0; j <= b.length; j++) {
+            previousRow[j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            currentRow[0] = i;
+            for (int j = 1; j <= b.length; j++) {
+                int substitution = previousRow[j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1);
+                int insertionOrDeletion = Math.min(previousRow[j], currentRow[j - 1]) + 1;
+                int value = Math.min(substitution, insertionOrDeletion);
+                currentRow[j] = value;
+            }
+            int[] swap = previousRow;
+            previousRow = currentRow;
+            currentRow = swap;
+        }
+        return previousRow[b.length];
+    }
+
+    private static char[] fold(CharSequence value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        boolean inWhitespace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ') {
+                inWhitespace = sb.length() > 0;
+                continue;
+            }
+            if (inWhitespace) {
+                sb.append(' ');
+                inWhitespace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        char[] folded = new char[sb.length()];
+        sb.getChars(0, sb.length(), folded, 0);
+        return folded;
+    }
+}
@@ -0,0 +1,270 @@
+package com.webjer.q2;
+
+import java.util.Arrays;
+
+/**
+ * Minimal perfect hash over a fixed set of keys which looks up char sequences case-insensitively
+ * and disregarding surrounding whitespaces (inner whitespace runs are matched as a single space)
+ * without allocating anything.
+ * <p>
+ * The "hash and displace" scheme is used: each key falls into a bucket by its first hash, each
+ * bucket has a displacement (found once at construction) which moves all its keys to distinct
+ * free slots of the table having exactly one slot per key. Lookup takes two hash mixes and
+ * a single comparison with the candidate key.
+ */
+final class CaseFoldingPerfectHash {
+
+    private final static char SPACE_CHAR = ' ';
+
+    private final char[][] foldedKeys;
+    private final int[] displacements;
+    private final int[] slotKeys;
+
+    /**
+     * @param keys keys to be looked up (their folded forms should be distinct).
+     */
+    CaseFoldingPerfectHash(String[] keys) {
+        int keysCount = keys.length;
+        foldedKeys = new char[keysCount][];
+        int[] hashes = new int[keysCount];
+        for (int i = 0; i < keysCount; i++) {
+            foldedKeys[i] = fold(keys[i]);
+            hashes[i] = hash(foldedKeys[i]);
+        }
+
+        // Distribute keys among buckets
+        //-------------------------------
+        int bucketsCount = Math.max(1, keysCount / 2);
+        int[][] buckets = new int[bucketsCount][];
+        int[] bucketSizes = new int[bucketsCount];
+        for (int i = 0; i < keysCount; i++) {
+            int bucket = bucketOf(hashes[i], bucketsCount);
+            if (buckets[bucket] == null) {
+                buckets[bucket] = new int[keysCount];
+            }
+            buckets[bucket][bucketSizes[bucket]++] = i;
+        }
+
+        // Find displacements starting from the largest buckets
+        //------------------------------------------------------
+        Integer[] bucketsOrder = new Integer[bucketsCount];
+        for (int b = 0; b < bucketsCount; b++) {
+            bucketsOrder[b] = b;
+        }
+        Arrays.sort(bucketsOrder, (a, b) -> Integer.compare(bucketSizes[b], bucketSizes[a]));
+
+        displacements = new int[bucketsCount];
+        slotKeys = new int[Math.max(1, keysCount)];
+        Arrays.fill(slotKeys, -1);
+        int[] candidateSlots = new int[keysCount];
+        for (int bucket : bucketsOrder) {
+            int size = bucketSizes[bucket];
+            if (size == 0) {
+                continue;
+            }
+            for (int displacement = 1; ; displacement++) {
+                if (displacement == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Keys should be distinct.");
+                }
+                if (fits(buckets[bucket], size, hashes, displacement, candidateSlots)) {
+                    for (int k = 0; k < size; k++) {
+                        slotKeys[candidateSlots[k]] = buckets[bucket][k];
+                    }
+                    displacements[bucket] = displacement;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the hash from the tables previously built for the same keys (see
+     * {@link #getDisplacements()} and {@link #getSlotKeys()}), so no displacements search is done.
+     *
+     * @param keys          keys to be looked up (in the same order the tables were built for).
+     * @param displacements displacements of the buckets.
+     * @param slotKeys      key indexes of the slots.
+     */
+    CaseFoldingPerfectHash(String[] keys, int[] displacements, int[] slotKeys) {
+        if (slotKeys.length != Math.max(1, keys.length)
+            || displacements.length != Math.max(1, keys.length / 2)) {
+            throw new IllegalArgumentException("Tables don't match the keys.");
+        }
+        foldedKeys = new char[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            foldedKeys[i] = fold(keys[i]);
+        }
+        this.displacements = displacements;
+        this.slotKeys = slotKeys;
+    }
+
+    /**
+     * @return displacements of the buckets (the array is shared, not copied).
+     */
+    int[] getDisplacements() {
+        return displacements;
+    }
+
+    /**
+     * @return key indexes of the slots (the array is shared, not copied).
+     */
+    int[] getSlotKeys() {
+        return slotKeys;
+    }
+
+    /**
+     * Looks up the key equal to the char sequence region.
+     *
+     * @return index of the key (as it was passed to the constructor) or -1 if there's no such key.
+     */
+    int indexOf(CharSequence chars, int from, int to) {
+        return indexOf(chars, null, from, to);
+    }
+
+    /**
+     * Looks up the key equal to the char array region.
+     *
+     * @return index of the key (as it was passed to the constructor) or -1 if there's no such key.
+     */
+    int indexOf(char[] chars, int from, int to) {
+        return indexOf(null, chars, from, to);
+    }
+
+    /**
+     * Looks up the key within either char sequence or char array (the other one is null), so
+     * no wrapper objects are needed for arrays.
+     */
+    private int indexOf(CharSequence sequence, char[] array, int from, int to) {
+        // Trim whitespaces in place
+        while (from < to && isWhitespace(charAt(sequence, array, from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(charAt(sequence, array, to - 1))) {
+            to--;
+        }
+        if (from == to || foldedKeys.length == 0) {
+            return -1;
+        }
+
+        // Hash folded chars
+        //-------------------
+        int hash = 0;
+        boolean inWhitespace = false;
+        for (int i = from; i < to; i++) {
+            char c = charAt(sequence, array, i);
+            if (isWhitespace(c)) {
+                inWhitespace = true;
+                continue;
+            }
+            if (inWhitespace) {
+                hash = 31 * hash + SPACE_CHAR;
+                inWhitespace = false;
+            }
+            hash = 31 * hash + Character.toLowerCase(c);
+        }
+
+        int bucket = bucketOf(hash, displacements.length);
+        int keyIndex = slotKeys[slotOf(hash, displacements[bucket], slotKeys.length)];
+
+        // Compare with the candidate key
+        //--------------------------------
+        char[] key = foldedKeys[keyIndex];
+        int keyPos = 0;
+        inWhitespace = false;
+        for (int i = from; i < to; i++) {
+            char c = charAt(sequence, array, i);
+            if (isWhitespace(c)) {
+                inWhitespace = true;
+                continue;
+            }
+            if (inWhitespace) {
+                if (keyPos == key.length || key[keyPos++] != SPACE_CHAR) {
+                    return -1;
+                }
+                inWhitespace = false;
+            }
+            if (keyPos == key.length || key[keyPos++] != Character.toLowerCase(c)) {
+                return -1;
+            }
+        }
+        return keyPos == key.length ? keyIndex : -1;
+    }
+
+    /**
+     * Checks whether all the bucket keys get distinct free slots with the given displacement.
+     */
+    private boolean fits(int[] bucketKeys,
+                         int size,
+                         int[] hashes,
+                         int displacement,
+                         int[] candidateSlots) {
+        for (int k = 0; k < size; k++) {
+            int slot = slotOf(hashes[bucketKeys[k]], displacement, slotKeys.length);
+            if (slotKeys[slot] != -1) {
+                return false;
+            }
+            for (int j = 0; j < k; j++) {
+                if (candidateSlots[j] == slot) {
+                    return false;
+                }
+            }
+            candidateSlots[k] = slot;
+        }
+        return true;
+    }
+
+    private static char[] fold(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        boolean inWhitespace = false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (isWhitespace(c)) {
+                inWhitespace = sb.length() > 0;
+                continue;
+            }
+            if (inWhitespace) {
+                sb.append(SPACE_CHAR);
+                inWhitespace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        char[] folded = new char[sb.length()];
+        sb.getChars(0, sb.length(), folded, 0);
+        return folded;
+    }
+
+    private static int hash(char[] foldedKey) {
+        int hash = 0;
+        for (char c : foldedKey) {
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    private static int bucketOf(int hash, int bucketsCount) {
+        return Math.floorMod(mix(hash), bucketsCount);
+    }
+
+    private static int slotOf(int hash, int displacement, int slotsCount) {
+        return Math.floorMod(mix(hash ^ (displacement * 0x9E3779B9)), slotsCount);
+    }
+
+    /**
+     * MurmurHash3 fmix32 finalizer.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char charAt(CharSequence sequence, char[] array, int index) {
+        return array != null ? array[index] : sequence.charAt(index);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c <= SPACE_CHAR;
+    }
+}
@@ -0,0 +1,46 @@
+package com.webjer.q2;
+
+/**
+ * Result of the fuzzy region name lookup: the closest region and its distance from the query.
+ */
+public final class FuzzyMatch {
+
+    private final int ordinal;
+    private final String code;
+    private final String name;
+    private final int distance;
+
+    FuzzyMatch(int ordinal, String code, String name, int distance) {
+        this.ordinal = ordinal;
+        this.code = code;
+        this.name = name;
+        this.distance = distance;
+    }
+
+    /**
+     * @return ordinal of the matched region (index in code order).
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Levenshtein distance between the query and the region name (case independent).
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s, distance %d)", code, name, distance);
+    }
+}
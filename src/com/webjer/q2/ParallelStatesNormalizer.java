@@ -0,0 +1,99 @@
+package com.webjer.q2;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join bulk normalization of state values (names or codes) into one-byte state ordinals.
+ * <p>
+ * Rows are split into chunks aligned to 64 rows, so every chunk owns whole words of the invalid
+ * rows bitmap and no synchronization is needed. Invalid values are just marked in the bitmap, no
+ * exceptions are thrown (and nothing is allocated) per row.
+ */
+@SuppressWarnings("serial") // The tasks are never serialized
+final class ParallelStatesNormalizer extends RecursiveAction {
+
+    /**
+     * Amount of rows processed by a single leaf task (should be a multiple of 64).
+     */
+    private final static int CHUNK_SIZE = 1 << 14;
+
+    private final CaseFoldingPerfectHash namesHash;
+    private final CaseFoldingPerfectHash codesHash;
+    private final CharSequence[] in;
+    private final byte[] outOrdinals;
+    private final long[] invalidRows;
+    private final int from;
+    private final int to;
+
+    private ParallelStatesNormalizer(CaseFoldingPerfectHash namesHash,
+                                     CaseFoldingPerfectHash codesHash,
+                                     CharSequence[] in,
+                                     byte[] outOrdinals,
+                                     long[] invalidRows,
+                                     int from,
+                                     int to) {
+        this.namesHash = namesHash;
+        this.codesHash = codesHash;
+        this.in = in;
+        this.outOrdinals = outOrdinals;
+        this.invalidRows = invalidRows;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Normalizes all the values.
+     *
+     * @return bitmap of invalid rows (bit <tt>i % 64</tt> of word <tt>i / 64</tt> is set for
+     * invalid row <tt>i</tt>).
+     */
+    static long[] normalize(CaseFoldingPerfectHash namesHash,
+                            CaseFoldingPerfectHash codesHash,
+                            CharSequence[] in,
+                            byte[] outOrdinals,
+                            ForkJoinPool pool) {
+        long[] invalidRows = new long[(in.length + 63) >>> 6];
+        ParallelStatesNormalizer task = new ParallelStatesNormalizer(
+            namesHash, codesHash, in, outOrdinals, invalidRows, 0, in.length
+        );
+        if (in.length <= CHUNK_SIZE) {
+            // Not worth forking
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return invalidRows;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > CHUNK_SIZE) {
+            // Split on the word boundary
+            int middle = ((from + to) >>> 1) & ~63;
+            invokeAll(
+                new ParallelStatesNormalizer(namesHash, codesHash, in, outOrdinals, invalidRows,
+                                             from, middle),
+                new ParallelStatesNormalizer(namesHash, codesHash, in, outOrdinals, invalidRows,
+                                             middle, to)
+            );
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            CharSequence value = in[i];
+            int ordinal = -1;
+            if (value != null) {
+                ordinal = namesHash.indexOf(value, 0, value.length());
+                if (ordinal < 0) {
+                    ordinal = codesHash.indexOf(value, 0, value.length());
+                }
+            }
+            if (ordinal < 0) {
+                invalidRows[i >>> 6] |= 1L << i;
+                outOrdinals[i] = StateUtils.INVALID_STATE_ORDINAL;
+            } else {
+                outOrdinals[i] = (byte) ordinal;
+            }
+        }
+    }
+}
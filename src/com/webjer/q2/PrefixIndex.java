@@ -0,0 +1,266 @@
+package com.webjer.q2;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Typeahead prefix search index over region names and codes.
+ * <p>
+ * Names and codes are folded (lowercased, inner whitespace runs collapsed) and sorted into
+ * a shared immutable table, so the entries starting with any prefix form a contiguous range of
+ * the table. The ranges of the first chars are precomputed, the rest is narrowed by binary search.
+ * A lookup returns the range packed into a <tt>long</tt> (see {@link #rangeStart(long)} and
+ * {@link #rangeEnd(long)}) and allocates nothing. Within a range the entries are ranked
+ * lexicographically: an exact match goes first and every entry goes before the ones it's a prefix
+ * of (e.g. a code before the names starting with it), but otherwise a longer entry may go before
+ * a shorter one (<tt>"new hampshire"</tt> before <tt>"ny"</tt>).
+ */
+public final class PrefixIndex {
+
+    private final static int FIRST_CHARS_COUNT = 128;
+
+    private final char[][] keys;
+    private final int[] ordinals;
+    private final String[] labels;
+    private final int[] firstCharStarts = new int[FIRST_CHARS_COUNT + 1];
+    private final int regionsCount;
+    private final SelectListRenderer selectListRenderer;
+
+    /**
+     * @param codes              region codes (index is the region ordinal).
+     * @param names              region names (same order and length as codes).
+     * @param selectListRenderer renderer of the regions select list (same order as codes).
+     */
+    PrefixIndex(String[] codes, String[] names, SelectListRenderer selectListRenderer) {
+        this.selectListRenderer = selectListRenderer;
+        regionsCount = codes.length;
+        int count = codes.length + names.length;
+        Integer[] order = new Integer[count];
+        char[][] unsortedKeys = new char[count][];
+        for (int i = 0; i < codes.length; i++) {
+            unsortedKeys[i] = fold(codes[i]);
+            unsortedKeys[codes.length + i] = fold(names[i]);
+            order[i] = i;
+            order[codes.length + i] = codes.length + i;
+        }
+        Arrays.sort(order, (a, b) -> compare(unsortedKeys[a], unsortedKeys[b]));
+
+        keys = new char[count][];
+        ordinals = new int[count];
+        labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            int entry = order[i];
+            keys[i] = unsortedKeys[entry];
+            ordinals[i] = entry % codes.length;
+            labels[i] = entry < codes.length ? codes[entry] : names[entry - codes.length];
+        }
+
+        // Precompute first char ranges (entries starting with non-ASCII chars go to the last one)
+        //------------------------------------------------------------------------------------------
+        int entry = 0;
+        for (int c = 0; c < FIRST_CHARS_COUNT; c++) {
+            firstCharStarts[c] = entry;
+            while (entry < count && Math.min(keys[entry][0], FIRST_CHARS_COUNT - 1) == c) {
+                entry++;
+            }
+        }
+        firstCharStarts[FIRST_CHARS_COUNT] = count;
+    }
+
+    /**
+     * Finds entries (names and codes) starting with the prefix (case independent, leading
+     * whitespaces are ignored, whitespace runs are matched as a single space).
+     *
+     * @param prefix typed prefix.
+     * @return packed range of the matching entries.
+     */
+    public long find(CharSequence prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix can't be null.");
+        }
+        int from = 0;
+        int to = prefix.length();
+        while (from < to && prefix.charAt(from) <= ' ') {
+            from++;
+        }
+        if (from == to) {
+            return packRange(0, keys.length);
+        }
+
+        char firstChar = Character.toLowerCase(prefix.charAt(from));
+        int low = firstChar < FIRST_CHARS_COUNT - 1 ? firstCharStarts[firstChar]
+                                                     : firstCharStarts[FIRST_CHARS_COUNT - 1];
+        int high = firstChar < FIRST_CHARS_COUNT - 1 ? firstCharStarts[firstChar + 1]
+                                                      : keys.length;
+        int start = lowerBound(prefix, from, to, low, high);
+        // Entries matching the prefix are contiguous, find the first one which doesn't match
+        int end = start;
+        while (end < high) {
+            int middle = (end + high) >>> 1;
+            if (comparePrefix(prefix, from, to, keys[middle]) == 0) {
+                end = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return packRange(start, end);
+    }
+
+    /**
+     * @return first position of the packed range.
+     */
+    public static int rangeStart(long range) {
+        return (int) (range >>> 32);
+    }
+
+    /**
+     * @return position after the last one of the packed range.
+     */
+    public static int rangeEnd(long range) {
+        return (int) range;
+    }
+
+    /**
+     * @param position entry position (within a range returned by {@link #find(CharSequence)}).
+     * @return ordinal of the region the entry belongs to.
+     */
+    public int ordinalAt(int position) {
+        return ordinals[position];
+    }
+
+    /**
+     * @param position entry position (within a range returned by {@link #find(CharSequence)}).
+     * @return matched label (region name or code as it's stored in the reference data).
+     */
+    public String labelAt(int position) {
+        return labels[position];
+    }
+
+    /**
+     * Writes HTML <tt>&lt;select&gt;</tt> control markup (same format as the full list has) with
+     * the regions of the range in rank order. Every region is listed once even if both its name
+     * and code match.
+     *
+     * @param out   output to append the markup to.
+     * @param range packed range returned by {@link #find(CharSequence)}.
+     * @throws IOException if the output fails.
+     */
+    public void writeSelectList(Appendable out, long range) throws IOException {
+        int start = rangeStart(range);
+        int end = rangeEnd(range);
+        // Up to 64 regions are deduplicated by a mask, the larger datasets need a bitmap
+        long writtenMask = 0;
+        long[] writtenBitmap = regionsCount > 64 ? new long[(regionsCount + 63) >>> 6] : null;
+
+        selectListRenderer.writeHeader(out);
+        boolean first = true;
+        for (int position = start; position < end; position++) {
+            int ordinal = ordinals[position];
+            if (writtenBitmap == null) {
+                if ((writtenMask & (1L << ordinal)) != 0) {
+                    continue;
+                }
+                writtenMask |= 1L << ordinal;
+            } else {
+                if ((writtenBitmap[ordinal >>> 6] & (1L << ordinal)) != 0) {
+                    continue;
+                }
+                writtenBitmap[ordinal >>> 6] |= 1L << ordinal;
+            }
+            selectListRenderer.writeOption(out, ordinal, first);
+            first = false;
+        }
+        selectListRenderer.writeFooter(out);
+    }
+
+    private static long packRange(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+
+    /**
+     * Finds the first entry which is not less than the prefix.
+     */
+    private int lowerBound(CharSequence prefix, int from, int to, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(prefix, from, to, keys[middle]) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the folded prefix with the beginning of the key.
+     *
+     * @return 0 if the key starts with the prefix, negative if the prefix is less than the key
+     * and positive otherwise.
+     */
+    private static int comparePrefix(CharSequence prefix, int from, int to, char[] key) {
+        int keyPos = 0;
+        boolean inWhitespace = false;
+        for (int i = from; i < to; i++) {
+            char c = prefix.charAt(i);
+            if (c <= ' ') {
+                inWhitespace = true;
+                continue;
+            }
+            if (inWhitespace) {
+                if (keyPos == key.length) {
+                    return 1;
+                }
+                if (key[keyPos] != ' ') {
+                    return ' ' - key[keyPos];
+                }
+                keyPos++;
+                inWhitespace = false;
+            }
+            if (keyPos == key.length) {
+                return 1;
+            }
+            char folded = Character.toLowerCase(c);
+            if (folded != key[keyPos]) {
+                return folded - key[keyPos];
+            }
+            keyPos++;
+        }
+        // Trailing whitespace typed
+        if (inWhitespace) {
+            if (keyPos == key.length) {
+                return 1;
+            }
+            return ' ' - key[keyPos];
+        }
+        return 0;
+    }
+
+    private static int compare(char[] a, char[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] != b[i]) {
+                return a[i] - b[i];
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static char[] fold(String value) {
+        char[] buffer = new char[value.length()];
+        int length = 0;
+        boolean inWhitespace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ') {
+                inWhitespace = length > 0;
+                continue;
+            }
+            if (inWhitespace) {
+                buffer[length++] = ' ';
+                inWhitespace = false;
+            }
+            buffer[length++] = Character.toLowerCase(c);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+}
@@ -0,0 +1,155 @@
+package com.webjer.q2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compiles a regions dataset from a text file (one <tt>code&lt;TAB&gt;name</tt> pair per line,
+ * empty lines and lines starting with <tt>#</tt> are ignored) into the binary resource read by
+ * {@link RegionRegistry}.
+ * <p>
+ * Binary format (big-endian):
+ * <pre>
+ * int    magic
+ * int    count
+ * int[]  record offsets sorted by folded code (count entries)
+ * int[]  record offsets sorted by folded name (count entries)
+ * int[]  record offsets in display (code) order (count entries)
+ * record {
+ *     u2    ordinal (display order)
+ *     u1    code length, code UTF-8 bytes
+ *     u2    name length, name UTF-8 bytes
+ * }
+ * </pre>
+ * Folded means lowercased code point by code point, codes and names are stored with inner
+ * whitespace runs collapsed into a single space.
+ */
+public final class RegionDatasetCompiler {
+
+    private RegionDatasetCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: RegionDatasetCompiler <source .tsv> <target .bin>");
+            return;
+        }
+        compile(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    /**
+     * Compiles the text dataset into the binary one.
+     *
+     * @param source text dataset file.
+     * @param target binary dataset file.
+     * @throws IOException if any file can't be read or written.
+     */
+    public static void compile(Path source, Path target) throws IOException {
+        List<String[]> regions = new ArrayList<>();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length != 2) {
+                throw new IllegalArgumentException("Wrong dataset line: " + line);
+            }
+            regions.add(new String[]{collapse(columns[0]), collapse(columns[1])});
+        }
+        try (OutputStream out = Files.newOutputStream(target)) {
+            out.write(toBinary(regions).array());
+        }
+    }
+
+    /**
+     * Builds the binary dataset.
+     *
+     * @param regions pairs of region code and name.
+     */
+    static ByteBuffer toBinary(List<String[]> regions) {
+        int count = regions.size();
+        Comparator<String[]> byCode =
+            Comparator.comparing(region -> folded(region[0]), RegionDatasetCompiler::compare);
+        Comparator<String[]> byName =
+            Comparator.comparing(region -> folded(region[1]), RegionDatasetCompiler::compare);
+
+        List<String[]> displayOrder = new ArrayList<>(regions);
+        displayOrder.sort(byCode);
+        for (int i = 1; i < count; i++) {
+            if (byCode.compare(displayOrder.get(i - 1), displayOrder.get(i)) == 0) {
+                throw new IllegalArgumentException("Duplicate code: " + displayOrder.get(i)[0]);
+            }
+        }
+
+        // Lay the records out
+        //---------------------
+        int recordsOffset = 8 + 3 * 4 * count;
+        int[] recordOffsets = new int[count];
+        int size = recordsOffset;
+        byte[][] codes = new byte[count][];
+        byte[][] names = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            codes[i] = displayOrder.get(i)[0].getBytes(StandardCharsets.UTF_8);
+            names[i] = displayOrder.get(i)[1].getBytes(StandardCharsets.UTF_8);
+            if (codes[i].length > 0xFF || names[i].length > 0xFFFF || count > 0xFFFF) {
+                throw new IllegalArgumentException("Region doesn't fit the format limits.");
+            }
+            recordOffsets[i] = size;
+            size += 2 + 1 + codes[i].length + 2 + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(RegionRegistry.MAGIC).putInt(count);
+        // Display order is the code order, but the code index is kept separately anyway, so the
+        // display order may be changed without format changes
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(recordOffsets[i]);
+        }
+        Integer[] nameOrder = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            nameOrder[i] = i;
+        }
+        Arrays.sort(nameOrder, (a, b) -> byName.compare(displayOrder.get(a), displayOrder.get(b)));
+        for (int ordinal : nameOrder) {
+            buffer.putInt(recordOffsets[ordinal]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(recordOffsets[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putShort((short) i)
+                .put((byte) codes[i].length).put(codes[i])
+                .putShort((short) names[i].length).put(names[i]);
+        }
+        return buffer;
+    }
+
+    private static String collapse(String value) {
+        return value.trim().replaceAll("\\s+", " ");
+    }
+
+    private static int[] folded(String value) {
+        return value.codePoints().map(Character::toLowerCase).toArray();
+    }
+
+    /**
+     * Compares folded values code point by code point (the same way the registry does).
+     */
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
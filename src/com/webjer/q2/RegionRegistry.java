@@ -0,0 +1,351 @@
+package com.webjer.q2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Regions (states, provinces, territories, subdivisions) reference data with the same operations
+ * as {@link StateUtils} provides for US states.
+ * <p>
+ * Every dataset is loaded on first use from the binary resource <tt>regions/&lt;id&gt;.bin</tt>
+ * (see {@link RegionDatasetCompiler} for the format). The resource is memory-mapped when it's
+ * a plain file (or copied into a direct buffer otherwise), lookups are binary searches over its
+ * sorted index tables, so no maps or boxed values are kept on heap. Names and codes are matched
+ * case-insensitively disregarding surrounding whitespaces.
+ */
+public final class RegionRegistry {
+
+    public final static String US_STATES = "us-states";
+    public final static String US_TERRITORIES = "us-territories";
+    public final static String CA_PROVINCES = "ca-provinces";
+
+    final static int MAGIC = 0x52474E31;
+
+    private final static Pattern DATASET_ID_PATTERN = Pattern.compile("[a-z0-9-]+");
+    private final static Map<String, RegionRegistry> loadedDatasets = new ConcurrentHashMap<>();
+
+    private final String datasetId;
+    private final ByteBuffer data;
+    private final int count;
+    private volatile SelectListRenderer selectListRenderer;
+    private volatile BkTreeIndex namesFuzzyIndex;
+
+    private RegionRegistry(String datasetId, ByteBuffer data) {
+        if (data.capacity() < 8 || data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Wrong regions dataset format: " + datasetId);
+        }
+        this.datasetId = datasetId;
+        this.data = data;
+        this.count = data.getInt(4);
+    }
+
+    /**
+     * Returns the dataset registry (the dataset is loaded on first request).
+     *
+     * @param datasetId dataset identifier, like {@link #US_STATES}.
+     * @return regions registry of the dataset.
+     */
+    public static RegionRegistry forDataset(String datasetId) {
+        if (datasetId == null || !DATASET_ID_PATTERN.matcher(datasetId).matches()) {
+            throw new IllegalArgumentException("Wrong regions dataset specified.");
+        }
+        return loadedDatasets.computeIfAbsent(datasetId, RegionRegistry::load);
+    }
+
+    /**
+     * @return dataset identifier.
+     */
+    public String getDatasetId() {
+        return datasetId;
+    }
+
+    /**
+     * @return amount of regions in the dataset.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Parses the region name, converting it to the region code.
+     *
+     * @param name region name (case independent).
+     * @return region code as <tt>String</tt>.
+     */
+    public String parse(CharSequence name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Region name can't be null.");
+        }
+        int ordinal = ordinalByName(name, 0, name.length());
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong region name specified.");
+        }
+        return code(ordinal);
+    }
+
+    /**
+     * Returns the full name of the region by its code.
+     *
+     * @param code region code (case independent).
+     * @return region name as <tt>String</tt>.
+     */
+    public String display(CharSequence code) {
+        if (code == null) {
+            throw new IllegalArgumentException("Region code can't be null.");
+        }
+        int ordinal = ordinalByCode(code, 0, code.length());
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong region code specified.");
+        }
+        return name(ordinal);
+    }
+
+    /**
+     * Looks up the region with the name closest to the given one. The BK-tree index of the names is
+     * built on the first call.
+     *
+     * @param name        region name (case independent).
+     * @param maxDistance maximal acceptable Levenshtein distance.
+     * @return the closest region or null if there's no region within the given distance.
+     */
+    public FuzzyMatch findClosest(CharSequence name, int maxDistance) {
+        if (name == null) {
+            throw new IllegalArgumentException("Region name can't be null.");
+        }
+        BkTreeIndex index = namesFuzzyIndex;
+        if (index == null) {
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = name(i);
+            }
+            // Concurrent first calls may build it twice, which is harmless
+            index = new BkTreeIndex(names);
+            namesFuzzyIndex = index;
+        }
+        long match = index.findClosest(name, maxDistance);
+        if (match < 0) {
+            return null;
+        }
+        int ordinal = (int) match;
+        return new FuzzyMatch(ordinal, code(ordinal), name(ordinal), (int) (match >>> 32));
+    }
+
+    /**
+     * Generates an HTML markup for <tt>&lt;select&gt;</tt> control containing the regions (ordered
+     * by code). The markup is rendered on the first call and cached.
+     *
+     * @param selectedCode code of the region to select (case independent) or null for no selection.
+     * @return html markup as <tt>String</tt>.
+     */
+    public String selectList(String selectedCode) {
+        int selectedOrdinal = SelectListRenderer.NO_SELECTION;
+        if (selectedCode != null) {
+            selectedOrdinal = ordinalByCode(selectedCode, 0, selectedCode.length());
+            if (selectedOrdinal < 0) {
+                throw new IllegalArgumentException("Wrong region code specified.");
+            }
+        }
+        SelectListRenderer renderer = selectListRenderer;
+        if (renderer == null) {
+            String[] codes = new String[count];
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                codes[i] = code(i);
+                names[i] = name(i);
+            }
+            // Concurrent first calls may render it twice, which is harmless
+            renderer = new SelectListRenderer("region", codes, names);
+            selectListRenderer = renderer;
+        }
+        return renderer.render(selectedOrdinal);
+    }
+
+    /**
+     * @param ordinal region ordinal (index in code order).
+     * @return region code.
+     */
+    public String code(int ordinal) {
+        int recordOffset = recordOffset(ordinal);
+        return decode(recordOffset + 3, data.get(recordOffset + 2) & 0xFF);
+    }
+
+    /**
+     * @param ordinal region ordinal (index in code order).
+     * @return region name.
+     */
+    public String name(int ordinal) {
+        int nameOffset = nameLengthOffset(recordOffset(ordinal));
+        return decode(nameOffset + 2, data.getShort(nameOffset) & 0xFFFF);
+    }
+
+    /**
+     * Looks the region up by name.
+     *
+     * @return region ordinal or -1 if there's no such region.
+     */
+    int ordinalByName(CharSequence chars, int from, int to) {
+        return binarySearch(8 + 4 * count, chars, from, to, true);
+    }
+
+    /**
+     * Looks the region up by code.
+     *
+     * @return region ordinal or -1 if there's no such region.
+     */
+    int ordinalByCode(CharSequence chars, int from, int to) {
+        return binarySearch(8, chars, from, to, false);
+    }
+
+    private int recordOffset(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IllegalArgumentException("Wrong region ordinal specified.");
+        }
+        return data.getInt(8 + 8 * count + 4 * ordinal);
+    }
+
+    private int nameLengthOffset(int recordOffset) {
+        return recordOffset + 3 + (data.get(recordOffset + 2) & 0xFF);
+    }
+
+    /**
+     * Binary search over the index table of record offsets.
+     */
+    private int binarySearch(int tableOffset,
+                             CharSequence chars,
+                             int from,
+                             int to,
+                             boolean byName) {
+        // Trim whitespaces in place
+        while (from < to && chars.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && chars.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int recordOffset = data.getInt(tableOffset + 4 * middle);
+            int cmp;
+            if (byName) {
+                int nameOffset = nameLengthOffset(recordOffset);
+                cmp = compareFolded(chars, from, to, nameOffset + 2,
+                                    data.getShort(nameOffset) & 0xFFFF);
+            } else {
+                cmp = compareFolded(chars, from, to, recordOffset + 3,
+                                    data.get(recordOffset + 2) & 0xFF);
+            }
+            if (cmp == 0) {
+                return data.getShort(recordOffset) & 0xFFFF;
+            } else if (cmp < 0) {
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares trimmed chars (inner whitespace runs are treated as a single space) with UTF-8 bytes
+     * of the dataset code point by code point, both lowercased.
+     */
+    private int compareFolded(CharSequence chars, int from, int to, int bytesOffset, int length) {
+        int pos = from;
+        int bytePos = bytesOffset;
+        int bytesEnd = bytesOffset + length;
+        while (true) {
+            int a = -1;
+            if (pos < to) {
+                a = Character.codePointAt(chars, pos);
+                if (a <= ' ') {
+                    while (pos < to && chars.charAt(pos) <= ' ') {
+                        pos++;
+                    }
+                    a = ' ';
+                } else {
+                    pos += Character.charCount(a);
+                    a = Character.toLowerCase(a);
+                }
+            }
+            int b = -1;
+            if (bytePos < bytesEnd) {
+                int lead = data.get(bytePos) & 0xFF;
+                int trailing = lead < 0x80 ? 0 : lead < 0xE0 ? 1 : lead < 0xF0 ? 2 : 3;
+                b = trailing == 0 ? lead : lead & (0x3F >> trailing);
+                for (int k = 1; k <= trailing; k++) {
+                    b = (b << 6) | (data.get(bytePos + k) & 0x3F);
+                }
+                bytePos += trailing + 1;
+                b = Character.toLowerCase(b);
+            }
+            if (a != b) {
+                return a < b ? -1 : 1;
+            }
+            if (a == -1) {
+                return 0;
+            }
+        }
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = data.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static RegionRegistry load(String datasetId) {
+        URL resource = RegionRegistry.class.getResource("regions/" + datasetId + ".bin");
+        if (resource == null) {
+            throw new IllegalArgumentException("Unknown regions dataset: " + datasetId);
+        }
+        try {
+            if ("file".equals(resource.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(resource.toURI()),
+                                                            StandardOpenOption.READ)) {
+                    return new RegionRegistry(
+                        datasetId, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    );
+                }
+            }
+            // Packed into an archive, so copy it off-heap
+            try (InputStream in = resource.openStream()) {
+                byte[] chunk = new byte[8192];
+                ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+                int read;
+                while ((read = in.read(chunk)) > 0) {
+                    if (buffer.remaining() < read) {
+                        ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2 + read);
+                        buffer.flip();
+                        buffer = grown.put(buffer);
+                    }
+                    buffer.put(chunk, 0, read);
+                }
+                buffer.flip();
+                return new RegionRegistry(datasetId, buffer.slice());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Regions dataset can't be loaded: " + datasetId, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Wrong regions dataset location: " + resource, e);
+        }
+    }
+}
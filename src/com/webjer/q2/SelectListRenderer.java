@@ -0,0 +1,207 @@
+package com.webjer.q2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders HTML <tt>&lt;select&gt;</tt> control with a fixed list of options and an optional
+ * pre-selected one.
+ * <p>
+ * The markup without selection is rendered once (as a <tt>String</tt> and as UTF-8 bytes) along
+ * with the offsets of every option within it and a "selected" variant of every option. So the
+ * markup with selection is always three cached slices: the markup before the selected option,
+ * the selected option variant and the markup after the selected option. Rendering is just writing
+ * these slices, there's no string building or charset encoding.
+ */
+final class SelectListRenderer {
+
+    /**
+     * Ordinal to pass for rendering the list without selection.
+     */
+    final static int NO_SELECTION = -1;
+
+    private final static String FOOTER = "</select>\n";
+
+    private final String markup;
+    private final byte[] markupBytes;
+    private final int[] optionStarts;
+    private final int[] optionEnds;
+    private final int[] optionByteStarts;
+    private final int[] optionByteEnds;
+    private final String[] selectedOptions;
+    private final byte[][] selectedOptionsBytes;
+
+    /**
+     * @param name   control name.
+     * @param values option values.
+     * @param labels option labels (same order and length as values).
+     */
+    SelectListRenderer(String name, String[] values, String[] labels) {
+        int count = values.length;
+        optionStarts = new int[count];
+        optionEnds = new int[count];
+        optionByteStarts = new int[count];
+        optionByteEnds = new int[count];
+        selectedOptions = new String[count];
+        selectedOptionsBytes = new byte[count][];
+
+        // Options offsets are necessary, so the markup is built by StringBuilder
+        StringBuilder sb = new StringBuilder();
+        sb.append("<select name=\"").append(name).append("\">\n");
+        int bytesCount = utf8Length(sb, 0, sb.length());
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('\n');
+                bytesCount++;
+            }
+            optionStarts[i] = sb.length();
+            optionByteStarts[i] = bytesCount;
+            sb.append("<option value=\"").append(values[i]).append("\">")
+                .append(labels[i]).append("</option>");
+            optionEnds[i] = sb.length();
+            bytesCount += utf8Length(sb, optionStarts[i], optionEnds[i]);
+            optionByteEnds[i] = bytesCount;
+
+            selectedOptions[i] =
+                "<option value=\"" + values[i] + "\" selected>" + labels[i] + "</option>";
+            selectedOptionsBytes[i] = selectedOptions[i].getBytes(StandardCharsets.UTF_8);
+        }
+        sb.append(FOOTER);
+        markup = sb.toString();
+        markupBytes = markup.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return markup without selection.
+     */
+    String getMarkup() {
+        return markup;
+    }
+
+    /**
+     * Renders the markup into a new <tt>String</tt>.
+     */
+    String render(int selectedOrdinal) {
+        if (selectedOrdinal == NO_SELECTION) {
+            return markup;
+        }
+        StringBuilder sb = new StringBuilder(markup.length() + selectedOptions[0].length());
+        try {
+            write(sb, selectedOrdinal);
+        } catch (IOException e) {
+            // StringBuilder never throws it
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the markup to the output.
+     */
+    void write(Appendable out, int selectedOrdinal) throws IOException {
+        if (selectedOrdinal == NO_SELECTION) {
+            out.append(markup);
+            return;
+        }
+        out.append(markup, 0, optionStarts[selectedOrdinal])
+            .append(selectedOptions[selectedOrdinal])
+            .append(markup, optionEnds[selectedOrdinal], markup.length());
+    }
+
+    /**
+     * Appends the markup preceding the options.
+     */
+    void writeHeader(Appendable out) throws IOException {
+        out.append(markup, 0, optionStarts.length > 0 ? optionStarts[0] : footerStart());
+    }
+
+    /**
+     * Appends a single (not selected) option, so the list of any options subset may be written.
+     *
+     * @param first whether the option is the first one written in the list.
+     */
+    void writeOption(Appendable out, int ordinal, boolean first) throws IOException {
+        if (!first) {
+            out.append('\n');
+        }
+        out.append(markup, optionStarts[ordinal], optionEnds[ordinal]);
+    }
+
+    /**
+     * Appends the markup following the options.
+     */
+    void writeFooter(Appendable out) throws IOException {
+        out.append(FOOTER);
+    }
+
+    private int footerStart() {
+        return markup.length() - FOOTER.length();
+    }
+
+    /**
+     * @return length of the UTF-8 encoded markup.
+     */
+    int encodedLength(int selectedOrdinal) {
+        if (selectedOrdinal == NO_SELECTION) {
+            return markupBytes.length;
+        }
+        return markupBytes.length
+               - (optionByteEnds[selectedOrdinal] - optionByteStarts[selectedOrdinal])
+               + selectedOptionsBytes[selectedOrdinal].length;
+    }
+
+    /**
+     * Puts the UTF-8 encoded markup to the buffer.
+     *
+     * @throws java.nio.BufferOverflowException if there's not enough space in the buffer.
+     */
+    void write(ByteBuffer out, int selectedOrdinal) {
+        if (selectedOrdinal == NO_SELECTION) {
+            out.put(markupBytes);
+            return;
+        }
+        int selectedStart = optionByteStarts[selectedOrdinal];
+        int selectedEnd = optionByteEnds[selectedOrdinal];
+        out.put(markupBytes, 0, selectedStart)
+            .put(selectedOptionsBytes[selectedOrdinal])
+            .put(markupBytes, selectedEnd, markupBytes.length - selectedEnd);
+    }
+
+    /**
+     * Writes the UTF-8 encoded markup to the channel (with a single gathering write if the channel
+     * supports it).
+     */
+    void write(WritableByteChannel channel, int selectedOrdinal) throws IOException {
+        ByteBuffer[] slices;
+        if (selectedOrdinal == NO_SELECTION) {
+            slices = new ByteBuffer[]{ByteBuffer.wrap(markupBytes)};
+        } else {
+            int selectedStart = optionByteStarts[selectedOrdinal];
+            int selectedEnd = optionByteEnds[selectedOrdinal];
+            slices = new ByteBuffer[]{
+                ByteBuffer.wrap(markupBytes, 0, selectedStart),
+                ByteBuffer.wrap(selectedOptionsBytes[selectedOrdinal]),
+                ByteBuffer.wrap(markupBytes, selectedEnd, markupBytes.length - selectedEnd)
+            };
+        }
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+            while (slices[slices.length - 1].hasRemaining()) {
+                gatheringChannel.write(slices);
+            }
+            return;
+        }
+        for (ByteBuffer slice : slices) {
+            while (slice.hasRemaining()) {
+                channel.write(slice);
+            }
+        }
+    }
+
+    private static int utf8Length(CharSequence chars, int from, int to) {
+        return chars.subSequence(from, to).toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,111 @@
+package com.webjer.q2;
+
+/**
+ * Compact state value: the one-byte state ordinal (index of the state in code order, see
+ * {@link StateUtils#stateCode(int)}).
+ * <p>
+ * There's exactly one instance per state created up front, so the conversions from and to codes
+ * and names allocate nothing and the instances may be compared by reference. Lookups are backed
+ * by the same perfect hashes as {@link StateUtils} uses.
+ */
+public final class StateCode implements Comparable<StateCode> {
+
+    private final static StateCode[] values;
+
+    static {
+        values = new StateCode[StateUtils.statesCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new StateCode((byte) i);
+        }
+    }
+
+    private final byte ordinal;
+
+    private StateCode(byte ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * @param ordinal state ordinal.
+     * @return the state.
+     */
+    public static StateCode valueOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Wrong state ordinal specified.");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * @param stateCode state abbreviation (case independent).
+     * @return the state.
+     */
+    public static StateCode of(CharSequence stateCode) {
+        if (stateCode == null) {
+            throw new IllegalArgumentException("State abbreviation can't be null.");
+        }
+        int ordinal = StateUtils.stateOrdinalByCode(stateCode);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong state abbreviation specified.");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * @param stateName state name (case independent).
+     * @return the state.
+     */
+    public static StateCode ofName(CharSequence stateName) {
+        if (stateName == null) {
+            throw new IllegalArgumentException("State name can't be null.");
+        }
+        int ordinal = StateUtils.stateOrdinalByName(stateName);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong state name specified.");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * @return amount of states.
+     */
+    public static int count() {
+        return values.length;
+    }
+
+    /**
+     * @return state ordinal (index of the state in code order).
+     */
+    public byte ordinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return state code as it's stored in the reference data.
+     */
+    public String getCode() {
+        return StateUtils.stateCode(ordinal);
+    }
+
+    /**
+     * @return state name as it's stored in the reference data.
+     */
+    public String getName() {
+        return StateUtils.stateName(ordinal);
+    }
+
+    @Override
+    public int compareTo(StateCode other) {
+        return ordinal - other.ordinal;
+    }
+
+    @Override
+    public int hashCode() {
+        return ordinal;
+    }
+
+    @Override
+    public String toString() {
+        return getCode();
+    }
+}
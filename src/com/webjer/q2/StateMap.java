@@ -0,0 +1,150 @@
+package com.webjer.q2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map keyed by states backed by a plain array indexed by state ordinal (presence of the keys is
+ * tracked by a <tt>long</tt> bitmask, so null values are allowed).
+ * <p>
+ * No entry objects are kept and nothing is hashed, lookups are single array reads (entries are
+ * created on iteration only). The map is not thread safe.
+ *
+ * @param <V> type of the values.
+ */
+public final class StateMap<V> extends AbstractMap<StateCode, V> {
+
+    private final Object[] values = new Object[StateCode.count()];
+    private long keys;
+
+    /**
+     * @param ordinal state ordinal.
+     * @return the value or null if there's no value for the state.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Wrong state ordinal specified.");
+        }
+        return (V) values[ordinal];
+    }
+
+    @Override
+    public V get(Object state) {
+        return state instanceof StateCode ? get(((StateCode) state).ordinal()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object state) {
+        return state instanceof StateCode && (keys & (1L << ((StateCode) state).ordinal())) != 0;
+    }
+
+    @Override
+    public V put(StateCode state, V value) {
+        if (state == null) {
+            throw new IllegalArgumentException("State can't be null.");
+        }
+        V previous = get(state.ordinal());
+        values[state.ordinal()] = value;
+        keys |= 1L << state.ordinal();
+        return previous;
+    }
+
+    @Override
+    public V remove(Object state) {
+        if (!(state instanceof StateCode)) {
+            return null;
+        }
+        return removeOrdinal(((StateCode) state).ordinal());
+    }
+
+    /**
+     * @return a new set of the states having values.
+     */
+    public StateSet keys() {
+        return StateSet.fromBits(keys);
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(keys);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        keys = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<StateCode, V>> entrySet() {
+        return new AbstractSet<Map.Entry<StateCode, V>>() {
+
+            @Override
+            public Iterator<Map.Entry<StateCode, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return StateMap.this.size();
+            }
+        };
+    }
+
+    private V removeOrdinal(int ordinal) {
+        V previous = get(ordinal);
+        values[ordinal] = null;
+        keys &= ~(1L << ordinal);
+        return previous;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<StateCode, V>> {
+
+        private long remaining = keys;
+        private int lastReturned = -1;
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        @Override
+        public Map.Entry<StateCode, V> next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            final int ordinal = lastReturned;
+            return new AbstractMap.SimpleEntry<StateCode, V>(StateCode.valueOf(ordinal),
+                                                             get(ordinal)) {
+                @Override
+                public V setValue(V value) {
+                    values[ordinal] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            removeOrdinal(lastReturned);
+            lastReturned = -1;
+        }
+    }
+}
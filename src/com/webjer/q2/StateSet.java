@@ -0,0 +1,227 @@
+package com.webjer.q2;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of states backed by a single <tt>long</tt> bitmask (bit <tt>i</tt> is set when the state
+ * with ordinal <tt>i</tt> is in the set).
+ * <p>
+ * The whole set takes about as much heap as a single <tt>HashSet</tt> entry does, union,
+ * intersection, difference and containment of the sets are single bitwise operations. The set
+ * is not thread safe.
+ */
+public final class StateSet extends AbstractSet<StateCode> {
+
+    private final static long ALL_STATES;
+
+    static {
+        if (StateCode.count() > Long.SIZE) {
+            throw new IllegalStateException("States don't fit into the bitmask.");
+        }
+        ALL_STATES = StateCode.count() == Long.SIZE ? -1L : (1L << StateCode.count()) - 1;
+    }
+
+    private long bits;
+
+    /**
+     * Creates an empty set.
+     */
+    public StateSet() {
+    }
+
+    private StateSet(long bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * @return a new empty set.
+     */
+    public static StateSet noneOf() {
+        return new StateSet();
+    }
+
+    /**
+     * @return a new set of all the states.
+     */
+    public static StateSet allOf() {
+        return new StateSet(ALL_STATES);
+    }
+
+    /**
+     * @param states states to put into the set.
+     * @return a new set of the given states.
+     */
+    public static StateSet of(StateCode... states) {
+        StateSet set = new StateSet();
+        for (StateCode state : states) {
+            set.add(state);
+        }
+        return set;
+    }
+
+    /**
+     * @param bits bitmask previously returned by {@link #toBits()}.
+     * @return a new set of the states of the bitmask.
+     */
+    public static StateSet fromBits(long bits) {
+        if ((bits & ~ALL_STATES) != 0) {
+            throw new IllegalArgumentException("Wrong states bitmask specified.");
+        }
+        return new StateSet(bits);
+    }
+
+    /**
+     * @return bitmask of the set (may be stored in a <tt>long</tt> column or field instead of the
+     * set itself).
+     */
+    public long toBits() {
+        return bits;
+    }
+
+    @Override
+    public boolean add(StateCode state) {
+        if (state == null) {
+            throw new IllegalArgumentException("State can't be null.");
+        }
+        long before = bits;
+        bits |= 1L << state.ordinal();
+        return bits != before;
+    }
+
+    @Override
+    public boolean remove(Object state) {
+        if (!(state instanceof StateCode)) {
+            return false;
+        }
+        long before = bits;
+        bits &= ~(1L << ((StateCode) state).ordinal());
+        return bits != before;
+    }
+
+    @Override
+    public boolean contains(Object state) {
+        return state instanceof StateCode && (bits & (1L << ((StateCode) state).ordinal())) != 0;
+    }
+
+    /**
+     * @param ordinal state ordinal.
+     * @return whether the state is in the set.
+     */
+    public boolean contains(int ordinal) {
+        return ordinal >= 0 && ordinal < Long.SIZE && (bits & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * @return whether the sets have at least one common state.
+     */
+    public boolean intersects(StateSet other) {
+        return (bits & other.bits) != 0;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> states) {
+        if (states instanceof StateSet) {
+            return (((StateSet) states).bits & ~bits) == 0;
+        }
+        return super.containsAll(states);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends StateCode> states) {
+        if (states instanceof StateSet) {
+            long before = bits;
+            bits |= ((StateSet) states).bits;
+            return bits != before;
+        }
+        return super.addAll(states);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> states) {
+        if (states instanceof StateSet) {
+            long before = bits;
+            bits &= ((StateSet) states).bits;
+            return bits != before;
+        }
+        return super.retainAll(states);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> states) {
+        if (states instanceof StateSet) {
+            long before = bits;
+            bits &= ~((StateSet) states).bits;
+            return bits != before;
+        }
+        return super.removeAll(states);
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(bits);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    @Override
+    public void clear() {
+        bits = 0;
+    }
+
+    @Override
+    public Iterator<StateCode> iterator() {
+        return new Iterator<StateCode>() {
+
+            private long remaining = bits;
+            private int lastReturned = -1;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public StateCode next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return StateCode.valueOf(lastReturned);
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned < 0) {
+                    throw new IllegalStateException();
+                }
+                bits &= ~(1L << lastReturned);
+                lastReturned = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof StateSet) {
+            return bits == ((StateSet) other).bits;
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        // Sum of the ordinals (hash codes of the states), as the Set contract requires
+        int hash = 0;
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            hash += Long.numberOfTrailingZeros(remaining);
+        }
+        return hash;
+    }
+}
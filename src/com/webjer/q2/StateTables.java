@@ -0,0 +1,104 @@
+package com.webjer.q2;
+
+/**
+ * States lookup tables and pre-rendered markup.
+ * <p>
+ * Generated by {@link StateTablesGenerator} from <tt>us-states.tsv</tt>, don't edit it manually.
+ */
+final class StateTables {
+
+    final static String[] CODES = {
+        "AK", "AL", "AR", "AZ", "CA", "CO", "CT", "DE", "FL", "GA", "HI", "IA", "ID", "IL", "IN",
+        "KS", "KY", "LA", "MA", "MD", "ME", "MI", "MN", "MO", "MS", "MT", "NC", "ND", "NE", "NH",
+        "NJ", "NM", "NV", "NY", "OH", "OK", "OR", "PA", "RI", "SC", "SD", "TN", "TX", "UT", "VA",
+        "VT", "WA", "WI", "WV", "WY"
+    };
+
+    final static String[] NAMES = {
+        "Alaska", "Alabama", "Arkansas", "Arizona", "California", "Colorado", "Connecticut",
+        "Delaware", "Florida", "Georgia", "Hawaii", "Iowa", "Idaho", "Illinois", "Indiana",
+        "Kansas", "Kentucky", "Louisiana", "Massachusetts", "Maryland", "Maine", "Michigan",
+        "Minnesota", "Missouri", "Mississippi", "Montana", "North Carolina", "North Dakota",
+        "Nebraska", "New Hampshire", "New Jersey", "New Mexico", "Nevada", "New York", "Ohio",
+        "Oklahoma", "Oregon", "Pennsylvania", "Rhode Island", "South Carolina", "South Dakota",
+        "Tennessee", "Texas", "Utah", "Virginia", "Vermont", "Washington", "Wisconsin",
+        "West Virginia", "Wyoming"
+    };
+
+    final static int[] CODES_HASH_DISPLACEMENTS = {
+        12, 8, 3, 45, 1, 12, 1, 2, 7, 0, 0, 12, 92, 1, 1, 0, 5, 3, 0, 38, 6, 0, 0, 31, 80
+    };
+
+    final static int[] CODES_HASH_SLOT_KEYS = {
+        29, 1, 34, 27, 6, 33, 13, 24, 14, 41, 42, 48, 40, 4, 8, 10, 11, 0, 49, 23, 46, 31, 7, 35,
+        9, 12, 3, 17, 25, 26, 47, 43, 16, 20, 45, 5, 30, 39, 37, 18, 28, 15, 21, 44, 22, 2, 32, 36,
+        19, 38
+    };
+
+    final static int[] NAMES_HASH_DISPLACEMENTS = {
+        11, 30, 1, 3, 0, 4, 11, 1, 17, 4, 3, 14, 33, 6, 2, 2, 6, 16, 1, 2, 13, 29, 12, 77, 10
+    };
+
+    final static int[] NAMES_HASH_SLOT_KEYS = {
+        41, 0, 49, 37, 18, 13, 9, 22, 12, 11, 45, 7, 23, 3, 4, 32, 44, 19, 16, 48, 35, 24, 36, 43,
+        28, 1, 8, 29, 30, 20, 40, 17, 27, 2, 21, 10, 5, 26, 14, 47, 42, 46, 25, 15, 38, 39, 33, 31,
+        6, 34
+    };
+
+    final static String SELECT_MARKUP =
+        "<select name=\"state\">\n"
+        + "<option value=\"AK\">Alaska</option>\n"
+        + "<option value=\"AL\">Alabama</option>\n"
+        + "<option value=\"AR\">Arkansas</option>\n"
+        + "<option value=\"AZ\">Arizona</option>\n"
+        + "<option value=\"CA\">California</option>\n"
+        + "<option value=\"CO\">Colorado</option>\n"
+        + "<option value=\"CT\">Connecticut</option>\n"
+        + "<option value=\"DE\">Delaware</option>\n"
+        + "<option value=\"FL\">Florida</option>\n"
+        + "<option value=\"GA\">Georgia</option>\n"
+        + "<option value=\"HI\">Hawaii</option>\n"
+        + "<option value=\"IA\">Iowa</option>\n"
+        + "<option value=\"ID\">Idaho</option>\n"
+        + "<option value=\"IL\">Illinois</option>\n"
+        + "<option value=\"IN\">Indiana</option>\n"
+        + "<option value=\"KS\">Kansas</option>\n"
+        + "<option value=\"KY\">Kentucky</option>\n"
+        + "<option value=\"LA\">Louisiana</option>\n"
+        + "<option value=\"MA\">Massachusetts</option>\n"
+        + "<option value=\"MD\">Maryland</option>\n"
+        + "<option value=\"ME\">Maine</option>\n"
+        + "<option value=\"MI\">Michigan</option>\n"
+        + "<option value=\"MN\">Minnesota</option>\n"
+        + "<option value=\"MO\">Missouri</option>\n"
+        + "<option value=\"MS\">Mississippi</option>\n"
+        + "<option value=\"MT\">Montana</option>\n"
+        + "<option value=\"NC\">North Carolina</option>\n"
+        + "<option value=\"ND\">North Dakota</option>\n"
+        + "<option value=\"NE\">Nebraska</option>\n"
+        + "<option value=\"NH\">New Hampshire</option>\n"
+        + "<option value=\"NJ\">New Jersey</option>\n"
+        + "<option value=\"NM\">New Mexico</option>\n"
+        + "<option value=\"NV\">Nevada</option>\n"
+        + "<option value=\"NY\">New York</option>\n"
+        + "<option value=\"OH\">Ohio</option>\n"
+        + "<option value=\"OK\">Oklahoma</option>\n"
+        + "<option value=\"OR\">Oregon</option>\n"
+        + "<option value=\"PA\">Pennsylvania</option>\n"
+        + "<option value=\"RI\">Rhode Island</option>\n"
+        + "<option value=\"SC\">South Carolina</option>\n"
+        + "<option value=\"SD\">South Dakota</option>\n"
+        + "<option value=\"TN\">Tennessee</option>\n"
+        + "<option value=\"TX\">Texas</option>\n"
+        + "<option value=\"UT\">Utah</option>\n"
+        + "<option value=\"VA\">Virginia</option>\n"
+        + "<option value=\"VT\">Vermont</option>\n"
+        + "<option value=\"WA\">Washington</option>\n"
+        + "<option value=\"WI\">Wisconsin</option>\n"
+        + "<option value=\"WV\">West Virginia</option>\n"
+        + "<option value=\"WY\">Wyoming</option></select>\n"
+        ;
+
+    private StateTables() {
+    }
+}
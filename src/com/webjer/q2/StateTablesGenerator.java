@@ -0,0 +1,162 @@
+package com.webjer.q2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates the <tt>StateTables</tt> source with the states lookup tables and the pre-rendered
+ * select list markup from the states data file (same format as {@link RegionDatasetCompiler}
+ * reads), so {@link StateUtils} initialization only loads constants.
+ * <p>
+ * Should be run whenever the data file changes:
+ * <pre>
+ * java com.webjer.q2.StateTablesGenerator src/com/webjer/q2/regions/us-states.tsv \
+ *     src/com/webjer/q2/StateTables.java
+ * </pre>
+ */
+public final class StateTablesGenerator {
+
+    private final static int LINE_LENGTH = 100;
+    private final static String INDENT = "        ";
+
+    private StateTablesGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: StateTablesGenerator <source .tsv> <target .java>");
+            return;
+        }
+        generate(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    /**
+     * Generates the tables source.
+     *
+     * @param source states data file.
+     * @param target generated source file.
+     * @throws IOException if any file can't be read or written.
+     */
+    public static void generate(Path source, Path target) throws IOException {
+        // States are ordered by code (index is the state ordinal)
+        Map<String, String> states = new TreeMap<>();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length != 2) {
+                throw new IllegalArgumentException("Wrong data line: " + line);
+            }
+            if (states.put(columns[0].trim(), columns[1].trim()) != null) {
+                throw new IllegalArgumentException("Duplicate code: " + columns[0]);
+            }
+        }
+        String[] codes = states.keySet().toArray(new String[0]);
+        String[] names = states.values().toArray(new String[0]);
+        CaseFoldingPerfectHash codesHash = new CaseFoldingPerfectHash(codes);
+        CaseFoldingPerfectHash namesHash = new CaseFoldingPerfectHash(names);
+        String markup = new SelectListRenderer("state", codes, names).getMarkup();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("package com.webjer.q2;\n\n")
+            .append("/**\n")
+            .append(" * States lookup tables and pre-rendered markup.\n")
+            .append(" * <p>\n")
+            .append(" * Generated by {@link StateTablesGenerator} from <tt>")
+            .append(source.getFileName()).append("</tt>, don't edit it manually.\n")
+            .append(" */\n")
+            .append("final class StateTables {\n\n");
+        appendStrings(sb, "CODES", codes);
+        appendStrings(sb, "NAMES", names);
+        appendInts(sb, "CODES_HASH_DISPLACEMENTS", codesHash.getDisplacements());
+        appendInts(sb, "CODES_HASH_SLOT_KEYS", codesHash.getSlotKeys());
+        appendInts(sb, "NAMES_HASH_DISPLACEMENTS", namesHash.getDisplacements());
+        appendInts(sb, "NAMES_HASH_SLOT_KEYS", namesHash.getSlotKeys());
+        appendMarkup(sb, "SELECT_MARKUP", markup);
+        sb.append("    private StateTables() {\n")
+            .append("    }\n")
+            .append("}\n");
+        Files.write(target, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendStrings(StringBuilder sb, String constant, String[] values) {
+        String[] literals = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            literals[i] = literal(values[i]);
+        }
+        appendArray(sb, "String", constant, literals);
+    }
+
+    private static void appendInts(StringBuilder sb, String constant, int[] values) {
+        String[] literals = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            literals[i] = Integer.toString(values[i]);
+        }
+        appendArray(sb, "int", constant, literals);
+    }
+
+    private static void appendArray(StringBuilder sb,
+                                    String type,
+                                    String constant,
+                                    String[] literals) {
+        sb.append("    final static ").append(type).append("[] ").append(constant).append(" = {\n");
+        int lineStart = sb.length();
+        sb.append(INDENT);
+        for (int i = 0; i < literals.length; i++) {
+            String item = literals[i] + (i < literals.length - 1 ? "," : "");
+            if (sb.length() - lineStart + 1 + item.length() > LINE_LENGTH) {
+                sb.setLength(sb.length() - 1);
+                sb.append('\n');
+                lineStart = sb.length();
+                sb.append(INDENT);
+            }
+            sb.append(item).append(' ');
+        }
+        sb.setLength(sb.length() - 1);
+        sb.append("\n    };\n\n");
+    }
+
+    /**
+     * Appends the markup as a concatenation of line literals (folded into a single constant by the
+     * compiler).
+     */
+    private static void appendMarkup(StringBuilder sb, String constant, String markup) {
+        sb.append("    final static String ").append(constant).append(" =\n");
+        int lineStart = 0;
+        boolean first = true;
+        while (lineStart < markup.length()) {
+            int lineEnd = markup.indexOf('\n', lineStart) + 1;
+            if (lineEnd == 0) {
+                lineEnd = markup.length();
+            }
+            sb.append(INDENT).append(first ? "" : "+ ")
+                .append(literal(markup.substring(lineStart, lineEnd))).append('\n');
+            first = false;
+            lineStart = lineEnd;
+        }
+        sb.append(INDENT).append(";\n\n");
+    }
+
+    private static String literal(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c < ' ' || c > '~') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
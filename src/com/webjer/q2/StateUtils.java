@@ -1,108 +1,78 @@
 package com.webjer.q2;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import com.webjer.MethodMetrics;
+import com.webjer.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Convenience class for manipulation US states data (name, codes and other things).
  */
 public final class StateUtils {
 
-    private final static Map<String, String> statesByAbbreviation;
-    private final static Map<String, String> statesByName;
+    /**
+     * State ordinal written for values which are neither state names nor state codes.
+     */
+    public final static byte INVALID_STATE_ORDINAL = -1;
+
+    // Entry points metrics (see Metrics), the input size is the length of the state name or code
+    // (or the amount of the values to normalize). The calls are recorded explicitly rather than by
+    // the measure wrapper, as linking its lambdas would double the first request time
+    private final static MethodMetrics CREATE_STATE_SELECT_LIST_METRICS =
+        Metrics.register(StateUtils.class, "createStateSelectList()");
+    private final static MethodMetrics CREATE_SELECTED_STATE_SELECT_LIST_METRICS =
+        Metrics.register(StateUtils.class, "createStateSelectList(String)");
+    private final static MethodMetrics APPEND_STATE_SELECT_LIST_METRICS =
+        Metrics.register(StateUtils.class, "writeStateSelectList(Appendable,String)");
+    private final static MethodMetrics PUT_STATE_SELECT_LIST_METRICS =
+        Metrics.register(StateUtils.class, "writeStateSelectList(ByteBuffer,String)");
+    private final static MethodMetrics WRITE_STATE_SELECT_LIST_METRICS =
+        Metrics.register(StateUtils.class, "writeStateSelectList(WritableByteChannel,String)");
+    private final static MethodMetrics STATE_SELECT_LIST_ENCODED_LENGTH_METRICS =
+        Metrics.register(StateUtils.class, "stateSelectListEncodedLength(String)");
+    private final static MethodMetrics PARSE_SELECTED_STATE_METRICS =
+        Metrics.register(StateUtils.class, "parseSelectedState(String)");
+    private final static MethodMetrics PARSE_SELECTED_STATE_CHARS_METRICS =
+        Metrics.register(StateUtils.class, "parseSelectedState(CharSequence)");
+    private final static MethodMetrics PARSE_SELECTED_STATE_ARRAY_METRICS =
+        Metrics.register(StateUtils.class, "parseSelectedState(char[],int,int)");
+    private final static MethodMetrics FIND_CLOSEST_STATE_METRICS =
+        Metrics.register(StateUtils.class, "findClosestState(CharSequence,int)");
+    private final static MethodMetrics DISPLAY_STATE_FULL_NAME_METRICS =
+        Metrics.register(StateUtils.class, "displayStateFullName(String)");
+    private final static MethodMetrics DISPLAY_STATE_FULL_NAME_CHARS_METRICS =
+        Metrics.register(StateUtils.class, "displayStateFullName(CharSequence)");
+    private final static MethodMetrics DISPLAY_STATE_FULL_NAME_ARRAY_METRICS =
+        Metrics.register(StateUtils.class, "displayStateFullName(char[],int,int)");
+    private final static MethodMetrics NORMALIZE_STATES_METRICS =
+        Metrics.register(StateUtils.class, "normalizeStates(CharSequence[],byte[])");
+    private final static MethodMetrics NORMALIZE_STATES_POOL_METRICS =
+        Metrics.register(StateUtils.class, "normalizeStates(CharSequence[],byte[],ForkJoinPool)");
+
     private final static String selectHtmlMarkup;
 
+    // States data ordered by code (index is the state ordinal) and perfect hashes over them
+    private final static String[] stateCodes;
+    private final static String[] stateNames;
+    private final static CaseFoldingPerfectHash stateCodesHash;
+    private final static CaseFoldingPerfectHash stateNamesHash;
+
     static {
-        // Generate reference map
-        Map<String, String> map = new TreeMap<>();
-        map.put("AL", "Alabama");
-        map.put("AK", "Alaska");
-        map.put("AZ", "Arizona");
-        map.put("AR", "Arkansas");
-        map.put("CA", "California");
-        map.put("CO", "Colorado");
-        map.put("CT", "Connecticut");
-        map.put("DE", "Delaware");
-        map.put("FL", "Florida");
-        map.put("GA", "Georgia");
-        map.put("HI", "Hawaii");
-        map.put("ID", "Idaho");
-        map.put("IL", "Illinois");
-        map.put("IN", "Indiana");
-        map.put("IA", "Iowa");
-        map.put("KS", "Kansas");
-        map.put("KY", "Kentucky");
-        map.put("LA", "Louisiana");
-        map.put("ME", "Maine");
-        map.put("MD", "Maryland");
-        map.put("MA", "Massachusetts");
-        map.put("MI", "Michigan");
-        map.put("MN", "Minnesota");
-        map.put("MS", "Mississippi");
-        map.put("MO", "Missouri");
-        map.put("MT", "Montana");
-        map.put("NE", "Nebraska");
-        map.put("NV", "Nevada");
-        map.put("NH", "New Hampshire");
-        map.put("NJ", "New Jersey");
-        map.put("NM", "New Mexico");
-        map.put("NY", "New York");
-        map.put("NC", "North Carolina");
-        map.put("ND", "North Dakota");
-        map.put("OH", "Ohio");
-        map.put("OK", "Oklahoma");
-        map.put("OR", "Oregon");
-        map.put("PA", "Pennsylvania");
-        map.put("RI", "Rhode Island");
-        map.put("SC", "South Carolina");
-        map.put("SD", "South Dakota");
-        map.put("TN", "Tennessee");
-        map.put("TX", "Texas");
-        map.put("UT", "Utah");
-        map.put("VT", "Vermont");
-        map.put("VA", "Virginia");
-        map.put("WA", "Washington");
-        map.put("WV", "West Virginia");
-        map.put("WI", "Wisconsin");
-        map.put("WY", "Wyoming");
-
-        // Generate states maps (direct and reverse)
-        statesByAbbreviation = Collections.unmodifiableMap(map);
-        statesByName = Collections.unmodifiableMap(
-            map.entrySet().stream()
-                // Reverse the map
-                .collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey))
+        // Lookup tables and markup are generated from regions/us-states.tsv by
+        // StateTablesGenerator, so only the constants are loaded here (no maps, streams or
+        // formatting on the first request)
+        stateCodes = StateTables.CODES;
+        stateNames = StateTables.NAMES;
+        stateCodesHash = new CaseFoldingPerfectHash(
+            stateCodes, StateTables.CODES_HASH_DISPLACEMENTS, StateTables.CODES_HASH_SLOT_KEYS
         );
-
-        // Generate markup for states select html control
-        selectHtmlMarkup =
-            map.entrySet().stream()
-                .map(
-                    entry -> String.format(
-                        "<option value=\"%s\">%s</option>", entry.getKey(), entry.getValue()
-                    )
-                ).collect(Collectors.joining("\n", "<select name=\"state\">\n", "</select>\n")
-            );
-
-        // The following commented solution with StringBuilder is faster (10-14 times in my tests),
-        // but consumes more memory (≈3.5 times more in my tests).
-        // Despite Streams API solution is more time consuming, it will not be that noticeable
-        // on 50 records and it is done only once on JVM start since it is static class initializer,
-        // but the code clarity is much higher than with StringBuilder.
-
-//        StringBuilder selectHtmlMarkupSB = new StringBuilder();
-//        selectHtmlMarkupSB.append("<select name=\"state\">\n");
-//        for (Map.Entry<String, String> entry : map.entrySet()) {
-//            selectHtmlMarkupSB.append("<option value=\"");
-//            selectHtmlMarkupSB.append(entry.getKey());
-//            selectHtmlMarkupSB.append("\">");
-//            selectHtmlMarkupSB.append(entry.getValue());
-//            selectHtmlMarkupSB.append("</option>\n");
-//        }
-//        selectHtmlMarkupSB.append("</select>\n");
-//        selectHtmlMarkup = selectHtmlMarkupSB.toString();
+        stateNamesHash = new CaseFoldingPerfectHash(
+            stateNames, StateTables.NAMES_HASH_DISPLACEMENTS, StateTables.NAMES_HASH_SLOT_KEYS
+        );
+        selectHtmlMarkup = StateTables.SELECT_MARKUP;
     }
 
     private StateUtils() {
@@ -114,34 +84,125 @@ public final class StateUtils {
      * @return html markup as <tt>String</tt>.
      */
     public static String createStateSelectList() {
+        CREATE_STATE_SELECT_LIST_METRICS.stop(CREATE_STATE_SELECT_LIST_METRICS.start());
         return selectHtmlMarkup;
-/*
-        The implemented solution is better than the original one because:
+    }
 
-         * this implementation doesn't waste a heap due to not concatenating strings via '+'
-            operator which puts to garbage all intermediate strings;
+    /**
+     * Generates an HTML markup for <tt>&lt;select&gt;</tt> control containing US states with
+     * the given state pre-selected.
+     *
+     * @param selectedCode code of the state to select (case independent) or null for no selection.
+     * @return html markup as <tt>String</tt>.
+     */
+    public static String createStateSelectList(String selectedCode) {
+        long startedAt = CREATE_SELECTED_STATE_SELECT_LIST_METRICS.start();
+        try {
+            String markup = SelectListHolder.RENDERER.render(selectedOrdinal(selectedCode));
+            CREATE_SELECTED_STATE_SELECT_LIST_METRICS.stop(startedAt);
+            return markup;
+        } catch (Throwable e) {
+            CREATE_SELECTED_STATE_SELECT_LIST_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * original implementation uses state name as form value passed through form submit which
-            is overhead, this implementation uses state code instead;
+    /**
+     * Writes an HTML markup for <tt>&lt;select&gt;</tt> control containing US states with the given
+     * state pre-selected. The markup is assembled from the cached fragments, nothing is built.
+     *
+     * @param out          output to append the markup to.
+     * @param selectedCode code of the state to select (case independent) or null for no selection.
+     * @throws IOException if the output fails.
+     */
+    public static void writeStateSelectList(Appendable out, String selectedCode)
+        throws IOException {
+        long startedAt = APPEND_STATE_SELECT_LIST_METRICS.start();
+        try {
+            if (out == null) {
+                throw new IllegalArgumentException("Output can't be null.");
+            }
+            SelectListHolder.RENDERER.write(out, selectedOrdinal(selectedCode));
+            APPEND_STATE_SELECT_LIST_METRICS.stop(startedAt);
+        } catch (Throwable e) {
+            APPEND_STATE_SELECT_LIST_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * this implementation doesn't generate the markup each time it is needed, but uses cached
-            pre-built copy;
+    /**
+     * Puts UTF-8 encoded HTML markup for <tt>&lt;select&gt;</tt> control containing US states with
+     * the given state pre-selected to the buffer. The markup is copied from the pre-encoded
+     * fragments, no charset encoding is done.
+     *
+     * @param out          buffer to put the markup to.
+     * @param selectedCode code of the state to select (case independent) or null for no selection.
+     * @throws java.nio.BufferOverflowException if there's not enough space in the buffer (see
+     *                                          {@link #stateSelectListEncodedLength(String)}).
+     */
+    public static void writeStateSelectList(ByteBuffer out, String selectedCode) {
+        long startedAt = PUT_STATE_SELECT_LIST_METRICS.start();
+        try {
+            if (out == null) {
+                throw new IllegalArgumentException("Output can't be null.");
+            }
+            SelectListHolder.RENDERER.write(out, selectedOrdinal(selectedCode));
+            PUT_STATE_SELECT_LIST_METRICS.stop(startedAt);
+        } catch (Throwable e) {
+            PUT_STATE_SELECT_LIST_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * if there any typo in referential data (state code or name) it is easy to fix it in one
-            place affecting other pieces of code where it also was copied to;
+    /**
+     * Writes UTF-8 encoded HTML markup for <tt>&lt;select&gt;</tt> control containing US states
+     * with the given state pre-selected to the channel. The pre-encoded fragments are written with
+     * a single gathering write (if the channel supports it).
+     *
+     * @param channel      channel to write the markup to.
+     * @param selectedCode code of the state to select (case independent) or null for no selection.
+     * @throws IOException if the channel fails.
+     */
+    public static void writeStateSelectList(WritableByteChannel channel, String selectedCode)
+        throws IOException {
+        long startedAt = WRITE_STATE_SELECT_LIST_METRICS.start();
+        try {
+            if (channel == null) {
+                throw new IllegalArgumentException("Channel can't be null.");
+            }
+            SelectListHolder.RENDERER.write(channel, selectedOrdinal(selectedCode));
+            WRITE_STATE_SELECT_LIST_METRICS.stop(startedAt);
+        } catch (Throwable e) {
+            WRITE_STATE_SELECT_LIST_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * the implemented solution is much easier to read.
+    /**
+     * @param selectedCode code of the state to select (case independent) or null for no selection.
+     * @return length in bytes of the UTF-8 encoded select list markup.
+     */
+    public static int stateSelectListEncodedLength(String selectedCode) {
+        long startedAt = STATE_SELECT_LIST_ENCODED_LENGTH_METRICS.start();
+        try {
+            int length = SelectListHolder.RENDERER.encodedLength(selectedOrdinal(selectedCode));
+            STATE_SELECT_LIST_ENCODED_LENGTH_METRICS.stop(startedAt);
+            return length;
+        } catch (Throwable e) {
+            STATE_SELECT_LIST_ENCODED_LENGTH_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-        // ---------------------------------
-        return
-            "<select name=\"state\">\n"
-            + "<option value=\"Alabama\">Alabama</option>\n"
-            + "<option value=\"Alaska\">Alaska</option>\n"
-            // more states here
-            + "</select>\n"
-            ;
-        // ---------------------------------
-*/
+    /**
+     * Returns typeahead prefix search index over state names and codes. Lookups return ranges
+     * of the shared immutable table and allocate nothing, the matching states may be rendered as
+     * a select list of the same format as {@link #createStateSelectList()} produces.
+     *
+     * @return states prefix index.
+     */
+    public static PrefixIndex statesPrefixIndex() {
+        return PrefixIndexHolder.INDEX;
     }
 
     /**
@@ -151,90 +212,323 @@ public final class StateUtils {
      * @return state code as <tt>String</tt>.
      */
     public static String parseSelectedState(String stateName) {
-        if (stateName == null) {
-            throw new IllegalArgumentException("State name can't be null.");
+        long startedAt = PARSE_SELECTED_STATE_METRICS.start();
+        try {
+            String stateCode = parseState(stateName);
+            PARSE_SELECTED_STATE_METRICS.stop(startedAt, stateName.length());
+            return stateCode;
+        } catch (Throwable e) {
+            PARSE_SELECTED_STATE_METRICS.fail(startedAt);
+            throw e;
         }
-        stateName = stateName.trim();
-        String refinedStateName =
-            stateName.substring(0, 1).toUpperCase() + stateName.substring(1).toLowerCase();
+    }
 
-        String stateCode = statesByName.get(refinedStateName);
-        if (stateCode == null) {
-            throw new IllegalArgumentException("Wrong state name specified.");
+    /**
+     * Parses the two-letter code of the state and returns the full name of the state.
+     *
+     * @param stateCode state abbreviation (case independent).
+     * @return state name as <tt>String</tt>.
+     */
+    public static String displayStateFullName(String stateCode) {
+        long startedAt = DISPLAY_STATE_FULL_NAME_METRICS.start();
+        try {
+            String stateName = displayState(stateCode);
+            DISPLAY_STATE_FULL_NAME_METRICS.stop(startedAt, stateCode.length());
+            return stateName;
+        } catch (Throwable e) {
+            DISPLAY_STATE_FULL_NAME_METRICS.fail(startedAt);
+            throw e;
         }
-        return stateCode;
-/*
-        The implemented solution is better than the original one because:
-
-         * hash map value access is constant (within same bucket, of course, so let's say
-            "rather constant") and faster than string comparison. But this will be noticeable only
-            under heavy load;
+    }
 
-         * current implementation treats the state name as string which might have been entered
-            manually, so it strips spaces, respects the case. So "AlAsKa" or "  aLASKa    "
-            will also result into "AK" code;
+    /**
+     * Parses the state name without allocating anything: surrounding whitespaces are skipped in
+     * place, the name is looked up case-insensitively (whatever amount of words it consists of)
+     * via the precomputed perfect hash.
+     *
+     * @param stateName state name (case independent).
+     * @return state code as <tt>String</tt>.
+     */
+    public static String parseSelectedState(CharSequence stateName) {
+        long startedAt = PARSE_SELECTED_STATE_CHARS_METRICS.start();
+        try {
+            String stateCode = parseState(stateName);
+            PARSE_SELECTED_STATE_CHARS_METRICS.stop(startedAt, stateName.length());
+            return stateCode;
+        } catch (Throwable e) {
+            PARSE_SELECTED_STATE_CHARS_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * this implementation handles invalid state name like "Whatever" or null value;
+    private static String parseState(CharSequence stateName) {
+        if (stateName == null) {
+            throw new IllegalArgumentException("State name can't be null.");
+        }
+        int ordinal = stateNamesHash.indexOf(stateName, 0, stateName.length());
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong state name specified.");
+        }
+        return stateCodes[ordinal];
+    }
 
-         * if there any typo in referential data (state code or name) it is easy to fix it in one
-            place affecting other pieces of code where it also was copied to;
+    /**
+     * Parses the state name stored in the array region without allocating anything.
+     *
+     * @param chars  array containing state name (case independent).
+     * @param offset state name offset.
+     * @param length state name length.
+     * @return state code as <tt>String</tt>.
+     * @see #parseSelectedState(CharSequence)
+     */
+    public static String parseSelectedState(char[] chars, int offset, int length) {
+        long startedAt = PARSE_SELECTED_STATE_ARRAY_METRICS.start();
+        try {
+            checkRegion(chars, offset, length, "State name can't be null.");
+            int ordinal = stateNamesHash.indexOf(chars, offset, offset + length);
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("Wrong state name specified.");
+            }
+            PARSE_SELECTED_STATE_ARRAY_METRICS.stop(startedAt, length);
+            return stateCodes[ordinal];
+        } catch (Throwable e) {
+            PARSE_SELECTED_STATE_ARRAY_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * the implemented solution is much easier to read.
+    /**
+     * Looks up the state with the name closest to the given one (useful for the names typed by
+     * users with typos, like "Pensylvania"). The lookup is backed by the BK-tree built once, so
+     * only a few names are actually compared.
+     *
+     * @param stateName   state name (case independent).
+     * @param maxDistance maximal acceptable Levenshtein distance.
+     * @return the closest state or null if there's no state within the given distance.
+     */
+    public static FuzzyMatch findClosestState(CharSequence stateName, int maxDistance) {
+        long startedAt = FIND_CLOSEST_STATE_METRICS.start();
+        try {
+            FuzzyMatch match = findClosest(stateName, maxDistance);
+            FIND_CLOSEST_STATE_METRICS.stop(startedAt, stateName.length());
+            return match;
+        } catch (Throwable e) {
+            FIND_CLOSEST_STATE_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-        // ---------------------------------
-        if (s.equals("Alabama")) {
-            return "AL";
+    private static FuzzyMatch findClosest(CharSequence stateName, int maxDistance) {
+        if (stateName == null) {
+            throw new IllegalArgumentException("State name can't be null.");
         }
-        if (s.equals("Alaska")) {
-            return "AK";
+        long match = FuzzyIndexHolder.INDEX.findClosest(stateName, maxDistance);
+        if (match < 0) {
+            return null;
         }
-        // more states here
-        // ---------------------------------
-*/
+        int ordinal = (int) match;
+        return new FuzzyMatch(ordinal, stateCodes[ordinal], stateNames[ordinal],
+                              (int) (match >>> 32));
     }
 
     /**
-     * Parses the two-letter code of the state and returns the full name of the state.
+     * Parses the two-letter code of the state without allocating anything: surrounding whitespaces
+     * are skipped in place, the code is looked up case-insensitively via the precomputed perfect
+     * hash.
      *
      * @param stateCode state abbreviation (case independent).
      * @return state name as <tt>String</tt>.
      */
-    public static String displayStateFullName(String stateCode) {
+    public static String displayStateFullName(CharSequence stateCode) {
+        long startedAt = DISPLAY_STATE_FULL_NAME_CHARS_METRICS.start();
+        try {
+            String stateName = displayState(stateCode);
+            DISPLAY_STATE_FULL_NAME_CHARS_METRICS.stop(startedAt, stateCode.length());
+            return stateName;
+        } catch (Throwable e) {
+            DISPLAY_STATE_FULL_NAME_CHARS_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
+
+    private static String displayState(CharSequence stateCode) {
         if (stateCode == null) {
             throw new IllegalArgumentException("State abbreviation can't be null.");
         }
-        String refinedStateCode = stateCode.trim().toUpperCase();
-        String stateName = statesByAbbreviation.get(refinedStateCode);
-        if (stateName == null) {
+        int ordinal = stateCodesHash.indexOf(stateCode, 0, stateCode.length());
+        if (ordinal < 0) {
             throw new IllegalArgumentException("Wrong state abbreviation specified.");
         }
-        return stateName;
-/*
-         The implemented approach is better because:
+        return stateNames[ordinal];
+    }
 
-         * accessing hash map value takes constant time and in worst case should be faster than
-          comparing strings. Will be noticeable under heavy load;
+    /**
+     * Parses the two-letter code of the state stored in the array region without allocating
+     * anything.
+     *
+     * @param chars  array containing state abbreviation (case independent).
+     * @param offset state abbreviation offset.
+     * @param length state abbreviation length.
+     * @return state name as <tt>String</tt>.
+     * @see #displayStateFullName(CharSequence)
+     */
+    public static String displayStateFullName(char[] chars, int offset, int length) {
+        long startedAt = DISPLAY_STATE_FULL_NAME_ARRAY_METRICS.start();
+        try {
+            checkRegion(chars, offset, length, "State abbreviation can't be null.");
+            int ordinal = stateCodesHash.indexOf(chars, offset, offset + length);
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("Wrong state abbreviation specified.");
+            }
+            DISPLAY_STATE_FULL_NAME_ARRAY_METRICS.stop(startedAt, length);
+            return stateNames[ordinal];
+        } catch (Throwable e) {
+            DISPLAY_STATE_FULL_NAME_ARRAY_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * current implementation treats the state code as string which might have been entered
-            manually, so it strips spaces, respects the case. So "AK" or "  ak    "
-            will also result into "Alaska" name;
+    /**
+     * Normalizes a column of state values (names or codes, case independent) into one-byte state
+     * ordinals (see {@link #stateCode(int)}) using the common fork-join pool.
+     *
+     * @param in          state values.
+     * @param outOrdinals array to write state ordinals to (at least as long as {@param in}),
+     *                    {@link #INVALID_STATE_ORDINAL} is written for invalid values.
+     * @return bitmap of invalid rows: bit <tt>i % 64</tt> of word <tt>i / 64</tt> is set when row
+     * <tt>i</tt> is invalid.
+     */
+    public static long[] normalizeStates(CharSequence[] in, byte[] outOrdinals) {
+        long startedAt = NORMALIZE_STATES_METRICS.start();
+        try {
+            long[] invalidRows = normalize(in, outOrdinals, ForkJoinPool.commonPool());
+            NORMALIZE_STATES_METRICS.stop(startedAt, in.length);
+            return invalidRows;
+        } catch (Throwable e) {
+            NORMALIZE_STATES_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * this implementation handles invalid codes like "ZZzzzZZ" or null value;
+    /**
+     * Normalizes a column of state values (names or codes, case independent) into one-byte state
+     * ordinals (see {@link #stateCode(int)}). Large columns are processed by parallel chunks, no
+     * exceptions are thrown for invalid values.
+     *
+     * @param in          state values.
+     * @param outOrdinals array to write state ordinals to (at least as long as {@param in}),
+     *                    {@link #INVALID_STATE_ORDINAL} is written for invalid values.
+     * @param pool        fork-join pool to process chunks within.
+     * @return bitmap of invalid rows: bit <tt>i % 64</tt> of word <tt>i / 64</tt> is set when row
+     * <tt>i</tt> is invalid.
+     */
+    public static long[] normalizeStates(CharSequence[] in, byte[] outOrdinals, ForkJoinPool pool) {
+        long startedAt = NORMALIZE_STATES_POOL_METRICS.start();
+        try {
+            long[] invalidRows = normalize(in, outOrdinals, pool);
+            NORMALIZE_STATES_POOL_METRICS.stop(startedAt, in.length);
+            return invalidRows;
+        } catch (Throwable e) {
+            NORMALIZE_STATES_POOL_METRICS.fail(startedAt);
+            throw e;
+        }
+    }
 
-         * if there any typo in referential data (state code or name) it is easy to fix it in one
-            place affecting other pieces of code where it also was copied to;
+    private static long[] normalize(CharSequence[] in, byte[] outOrdinals, ForkJoinPool pool) {
+        if (in == null || outOrdinals == null || pool == null) {
+            throw new IllegalArgumentException("Input, output and pool can't be null.");
+        }
+        if (outOrdinals.length < in.length) {
+            throw new IllegalArgumentException("Output array is shorter than input one.");
+        }
+        return ParallelStatesNormalizer.normalize(stateNamesHash, stateCodesHash, in, outOrdinals,
+                                                  pool);
+    }
 
-         * the implemented solution is much easier to read.
+    /**
+     * @param ordinal state ordinal (index of the state in code order).
+     * @return state code as <tt>String</tt>.
+     */
+    public static String stateCode(int ordinal) {
+        if (ordinal < 0 || ordinal >= stateCodes.length) {
+            throw new IllegalArgumentException("Wrong state ordinal specified.");
+        }
+        return stateCodes[ordinal];
+    }
+
+    /**
+     * @param ordinal state ordinal (index of the state in code order).
+     * @return state name as <tt>String</tt>.
+     */
+    public static String stateName(int ordinal) {
+        if (ordinal < 0 || ordinal >= stateNames.length) {
+            throw new IllegalArgumentException("Wrong state ordinal specified.");
+        }
+        return stateNames[ordinal];
+    }
+
+    /**
+     * @return amount of states (ordinals are <tt>0..statesCount() - 1</tt>).
+     */
+    public static int statesCount() {
+        return stateCodes.length;
+    }
+
+    /**
+     * Looks the state up by code without allocating anything.
+     *
+     * @return state ordinal or -1 if there's no such state.
+     */
+    static int stateOrdinalByCode(CharSequence stateCode) {
+        return stateCodesHash.indexOf(stateCode, 0, stateCode.length());
+    }
 
-        // ---------------------------------
-        if (abbr.equals("AL")) {
-            return "Alabama";
+    /**
+     * Looks the state up by name without allocating anything.
+     *
+     * @return state ordinal or -1 if there's no such state.
+     */
+    static int stateOrdinalByName(CharSequence stateName) {
+        return stateNamesHash.indexOf(stateName, 0, stateName.length());
+    }
+
+    private static int selectedOrdinal(String selectedCode) {
+        if (selectedCode == null) {
+            return SelectListRenderer.NO_SELECTION;
         }
-        if (abbr.equals("AK")) {
-            return "Alaska";
+        int ordinal = stateCodesHash.indexOf(selectedCode, 0, selectedCode.length());
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong state abbreviation specified.");
+        }
+        return ordinal;
+    }
+
+    private static void checkRegion(char[] chars, int offset, int length, String nullMessage) {
+        if (chars == null) {
+            throw new IllegalArgumentException(nullMessage);
         }
-        // more states here
-        // ---------------------------------
-*/
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IllegalArgumentException("Wrong array region specified.");
+        }
+    }
+
+    // Indexes which aren't needed by the most of requests are built on the first use (the holder
+    // classes are initialized lazily by JVM)
+    //----------------------------------------------------------------------------------------------
+
+    private final static class SelectListHolder {
+        // The renderer keeps options offsets and pre-encoded fragments, so the markup with
+        // a selected state is rendered from the cached slices
+        final static SelectListRenderer RENDERER =
+            new SelectListRenderer("state", stateCodes, stateNames);
+    }
+
+    private final static class FuzzyIndexHolder {
+        final static BkTreeIndex INDEX = new BkTreeIndex(stateNames);
+    }
+
+    private final static class PrefixIndexHolder {
+        final static PrefixIndex INDEX =
+            new PrefixIndex(stateCodes, stateNames, SelectListHolder.RENDERER);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package com.webjer.q2;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Copy of the {@link StateUtils} initialization as it was before the tables were generated (and
+ * of the entry points {@link StateUtilsStartupRunner} calls), the startup baseline only. All the
+ * tables are built even though the copy uses only some of them, so the class loading and the
+ * initialization work are the same the original class did.
+ */
+final class StateUtilsBaseline {
+
+    private final static Map<String, String> statesByAbbreviation;
+    private final static Map<String, String> statesByName;
+    private final static String selectHtmlMarkup;
+    private final static SelectListRenderer selectListRenderer;
+
+    // States data ordered by code (index is the state ordinal) and perfect hashes over them
+    private final static String[] stateCodes;
+    private final static String[] stateNames;
+    private final static CaseFoldingPerfectHash stateCodesHash;
+    private final static CaseFoldingPerfectHash stateNamesHash;
+    private final static BkTreeIndex stateNamesFuzzyIndex;
+    private final static PrefixIndex statesPrefixIndex;
+
+    static {
+        // Generate reference map
+        Map<String, String> map = new TreeMap<>();
+        map.put("AL", "Alabama");
+        map.put("AK", "Alaska");
+        map.put("AZ", "Arizona");
+        map.put("AR", "Arkansas");
+        map.put("CA", "California");
+        map.put("CO", "Colorado");
+        map.put("CT", "Connecticut");
+        map.put("DE", "Delaware");
+        map.put("FL", "Florida");
+        map.put("GA", "Georgia");
+        map.put("HI", "Hawaii");
+        map.put("ID", "Idaho");
+        map.put("IL", "Illinois");
+        map.put("IN", "Indiana");
+        map.put("IA", "Iowa");
+        map.put("KS", "Kansas");
+        map.put("KY", "Kentucky");
+        map.put("LA", "Louisiana");
+        map.put("ME", "Maine");
+        map.put("MD", "Maryland");
+        map.put("MA", "Massachusetts");
+        map.put("MI", "Michigan");
+        map.put("MN", "Minnesota");
+        map.put("MS", "Mississippi");
+        map.put("MO", "Missouri");
+        map.put("MT", "Montana");
+        map.put("NE", "Nebraska");
+        map.put("NV", "Nevada");
+        map.put("NH", "New Hampshire");
+        map.put("NJ", "New Jersey");
+        map.put("NM", "New Mexico");
+        map.put("NY", "New York");
+        map.put("NC", "North Carolina");
+        map.put("ND", "North Dakota");
+        map.put("OH", "Ohio");
+        map.put("OK", "Oklahoma");
+        map.put("OR", "Oregon");
+        map.put("PA", "Pennsylvania");
+        map.put("RI", "Rhode Island");
+        map.put("SC", "South Carolina");
+        map.put("SD", "South Dakota");
+        map.put("TN", "Tennessee");
+        map.put("TX", "Texas");
+        map.put("UT", "Utah");
+        map.put("VT", "Vermont");
+        map.put("VA", "Virginia");
+        map.put("WA", "Washington");
+        map.put("WV", "West Virginia");
+        map.put("WI", "Wisconsin");
+        map.put("WY", "Wyoming");
+
+        // Generate states maps (direct and reverse)
+        statesByAbbreviation = Collections.unmodifiableMap(map);
+        statesByName = Collections.unmodifiableMap(
+            map.entrySet().stream()
+                // Reverse the map
+                .collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey))
+        );
+
+        // Generate lookup tables for allocation-free parsing
+        stateCodes = map.keySet().toArray(new String[0]);
+        stateNames = map.values().toArray(new String[0]);
+        stateCodesHash = new CaseFoldingPerfectHash(stateCodes);
+        stateNamesHash = new CaseFoldingPerfectHash(stateNames);
+        stateNamesFuzzyIndex = new BkTreeIndex(stateNames);
+
+        // Generate markup for states select html control (the renderer keeps options offsets
+        // and pre-encoded fragments, so the markup with a selected state is rendered from the
+        // cached slices as well)
+        selectListRenderer = new SelectListRenderer("state", stateCodes, stateNames);
+        selectHtmlMarkup = selectListRenderer.getMarkup();
+        statesPrefixIndex = new PrefixIndex(stateCodes, stateNames, selectListRenderer);
+    }
+
+    private StateUtilsBaseline() {
+    }
+
+    static String createStateSelectList() {
+        return selectHtmlMarkup;
+    }
+
+    static String parseSelectedState(String stateName) {
+        if (stateName == null) {
+            throw new IllegalArgumentException("State name can't be null.");
+        }
+        int ordinal = stateNamesHash.indexOf(stateName, 0, stateName.length());
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Wrong state name specified.");
+        }
+        return stateCodes[ordinal];
+    }
+}
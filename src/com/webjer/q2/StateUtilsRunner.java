@@ -1,5 +1,10 @@
 package com.webjer.q2;
 
+import com.webjer.PerformanceGauge;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Simple tests runner for {@link StateUtils}.
  */
@@ -10,10 +15,15 @@ public class StateUtilsRunner {
         System.out.println("\nHTML markup.\n-----------------------------");
         System.out.println(StateUtils.createStateSelectList());
 
+        System.out.println("\nHTML markup with selected state.\n-----------------------------");
+        System.out.println(StateUtils.createStateSelectList("ny"));
+
         System.out.println("\nNames to codes.\n-----------------------------");
         performParseSelectedState("alaska");
         performParseSelectedState("  Delaware ");
         performParseSelectedState("  teXas");
+        performParseSelectedState("new york");
+        performParseSelectedState(" NORTH   dakota ");
 
         System.out.println("\nCodes to names.\n-----------------------------");
         performDisplayStateFullName("AK");
@@ -21,6 +31,93 @@ public class StateUtilsRunner {
         performDisplayStateFullName("IN  ");
         performDisplayStateFullName("  mD  ");
         performDisplayStateFullName("  ne  ");
+
+        System.out.println("\nFuzzy names.\n-----------------------------");
+        System.out.println("Pensylvania ->  " + StateUtils.findClosestState("Pensylvania", 2));
+        System.out.println("Masachusets ->  " + StateUtils.findClosestState("Masachusets", 2));
+        System.out.println("Whatever ->  " + StateUtils.findClosestState("Whatever", 2));
+
+        System.out.println("\nTypeahead.\n-----------------------------");
+        performTypeahead("n");
+        performTypeahead("new ");
+        performTypeahead("WA");
+        StringBuilder subset = new StringBuilder();
+        try {
+            StateUtils.statesPrefixIndex().writeSelectList(
+                subset, StateUtils.statesPrefixIndex().find("north")
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println(subset);
+
+        System.out.println("\nState sets and maps.\n-----------------------------");
+        StateSet west = StateSet.of(StateCode.of("CA"), StateCode.of("OR"), StateCode.of("WA"));
+        StateSet shippable = StateSet.of(StateCode.ofName("california"), StateCode.of("ny"));
+        StateSet westShippable = StateSet.fromBits(west.toBits());
+        westShippable.retainAll(shippable);
+        System.out.println(west + " & " + shippable + " ->  " + westShippable);
+        System.out.println("contains all ->  " + west.containsAll(westShippable));
+        StateMap<String> carriers = new StateMap<>();
+        carriers.put(StateCode.of("TX"), "Ground");
+        carriers.put(StateCode.of("AK"), "Air");
+        System.out.println(carriers + " ->  " + carriers.get(StateCode.ofName("Alaska")));
+
+        System.out.println("\nColumn normalization.\n-----------------------------");
+        CharSequence[] column = {"ny", " Texas", "Whatever", null, "north dakota"};
+        byte[] ordinals = new byte[column.length];
+        long[] invalidRows = StateUtils.normalizeStates(column, ordinals);
+        for (int i = 0; i < column.length; i++) {
+            boolean invalid = (invalidRows[i >>> 6] & (1L << i)) != 0;
+            System.out.println(column[i] + " ->  "
+                               + (invalid ? "invalid" : StateUtils.stateCode(ordinals[i])));
+        }
+
+        System.out.println("\nOther regions.\n-----------------------------");
+        RegionRegistry provinces = RegionRegistry.forDataset(RegionRegistry.CA_PROVINCES);
+        System.out.println("british  columbia ->  " + provinces.parse("british  columbia"));
+        System.out.println("qc ->  " + provinces.display("qc"));
+        RegionRegistry territories = RegionRegistry.forDataset(RegionRegistry.US_TERRITORIES);
+        System.out.println(territories.selectList("PR"));
+
+        System.out.println("\nPerformance.\n-----------------------------");
+        performLookupsTest();
+    }
+
+    private static void performLookupsTest() {
+        String[] names = new String[StateUtils.statesCount()];
+        String[] codes = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = StateUtils.stateName(i).toLowerCase();
+            codes[i] = StateUtils.stateCode(i).toLowerCase();
+        }
+        // Every lookup is an iteration (the timer takes about as long as the lookup itself)
+        int[] next = new int[1];
+        new PerformanceGauge(
+            () -> StateUtils.parseSelectedState(names[next[0]++ % names.length]),
+            100_000,
+            1_000_000
+        ).measureAndPrint("Name parsed");
+        new PerformanceGauge(
+            () -> StateUtils.displayStateFullName(codes[next[0]++ % codes.length]),
+            100_000,
+            1_000_000
+        ).measureAndPrint("Code displayed");
+        new PerformanceGauge(
+            () -> StateUtils.createStateSelectList(codes[next[0]++ % codes.length]),
+            10_000,
+            100_000
+        ).measureAndPrint("Select list created");
+    }
+
+    private static void performTypeahead(String prefix) {
+        PrefixIndex index = StateUtils.statesPrefixIndex();
+        long range = index.find(prefix);
+        StringBuilder sb = new StringBuilder();
+        for (int i = PrefixIndex.rangeStart(range); i < PrefixIndex.rangeEnd(range); i++) {
+            sb.append(index.labelAt(i)).append(" (").append(index.ordinalAt(i)).append(") ");
+        }
+        System.out.println(prefix + " ->  " + sb);
     }
 
     private static void performParseSelectedState(String code) {
@@ -0,0 +1,83 @@
+package com.webjer.q2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Simple startup benchmark runner for {@link StateUtils}: measures the first request (including
+ * the class loading and initialization) in fresh JVMs with the generated tables and with the tables
+ * built at runtime by the previous initializer (see {@link StateUtilsBaseline}).
+ */
+public class StateUtilsStartupRunner {
+
+    private final static int FORKS_COUNT = 15;
+    private final static String GENERATED_MODE = "generated";
+    private final static String RUNTIME_MODE = "runtime";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 1) {
+            // Forked JVM, measure once
+            long startedAt = System.nanoTime();
+            if (GENERATED_MODE.equals(args[0])) {
+                initializeGenerated();
+            } else {
+                initializeAtRuntime();
+            }
+            System.out.println(System.nanoTime() - startedAt);
+            return;
+        }
+
+        System.out.println("\nFirst request in a fresh JVM.\n-----------------------------");
+        measureAndPrint(RUNTIME_MODE);
+        measureAndPrint(GENERATED_MODE);
+    }
+
+    private static void measureAndPrint(String mode) throws IOException, InterruptedException {
+        long[] samples = new long[FORKS_COUNT];
+        for (int i = 0; i < FORKS_COUNT; i++) {
+            samples[i] = fork(mode);
+        }
+        Arrays.sort(samples);
+        System.out.println(
+            String.format("%-10s median %d us, min %d us, max %d us",
+                          mode, samples[FORKS_COUNT / 2] / 1000, samples[0] / 1000,
+                          samples[FORKS_COUNT - 1] / 1000)
+        );
+    }
+
+    private static long fork(String mode) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+                      + "java";
+        Process process = new ProcessBuilder(
+            java, "-cp", System.getProperty("java.class.path"),
+            StateUtilsStartupRunner.class.getName(), mode
+        ).redirectErrorStream(true).start();
+        String output;
+        try (BufferedReader in = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            output = in.readLine();
+        }
+        if (process.waitFor() != 0 || output == null) {
+            throw new IllegalStateException("Forked JVM failed: " + output);
+        }
+        return Long.parseLong(output.trim());
+    }
+
+    private static void initializeGenerated() {
+        StateUtils.createStateSelectList();
+        StateUtils.parseSelectedState("New York");
+    }
+
+    /**
+     * Serves the same request with {@link StateUtilsBaseline}, the copy of the class initialization
+     * made before the tables were generated.
+     */
+    private static void initializeAtRuntime() {
+        StateUtilsBaseline.createStateSelectList();
+        StateUtilsBaseline.parseSelectedState("New York");
+    }
+}
@@ -0,0 +1,43 @@
+package com.webjer.q3;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of the wrapped lines offsets (start and end of each line in the source text).
+ */
+final class LineOffsets {
+
+    private int[] offsets = new int[64];
+    private int size;
+
+    void add(int start, int end) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = start;
+        offsets[size++] = end;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int linesCount() {
+        return size >>> 1;
+    }
+
+    int lineStart(int line) {
+        return offsets[line << 1];
+    }
+
+    int lineEnd(int line) {
+        return offsets[(line << 1) + 1];
+    }
+
+    /**
+     * @return offsets packed as <tt>start0, end0, start1, end1, ...</tt>
+     */
+    int[] toArray() {
+        return Arrays.copyOf(offsets, size);
+    }
+}
@@ -0,0 +1,147 @@
+package com.webjer.q3;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+/**
+ * Receiver of the wrapped lines: every line is passed as the offsets in the source text of its
+ * first char and past its last char (the line content is the text between them with every run
+ * of spaces replaced by a single space, an empty line has the same start and end).
+ */
+interface LineSink {
+
+    /**
+     * Receives the next line.
+     *
+     * @param closed true if the line is followed by a newline.
+     * @throws IOException if appending the line content fails.
+     */
+    void addLine(CharSequence text, int start, int end, boolean closed) throws IOException;
+
+    /**
+     * Puts line offsets into an array, packed as <tt>start0, end0, start1, end1, ...</tt> Lines
+     * which don't fit are skipped (the caller compares the lines count with the array length).
+     * The sink is reused: it's bound to an array by {@link #reset(int[])}.
+     */
+    final class OffsetsArray implements LineSink {
+
+        private int[] offsets;
+        private int size;
+
+        /**
+         * @param offsets array to put the offsets to, <tt>null</tt> to free the sink.
+         */
+        OffsetsArray reset(int[] offsets) {
+            this.offsets = offsets;
+            size = 0;
+            return this;
+        }
+
+        boolean isFree() {
+            return offsets == null;
+        }
+
+        @Override
+        public void addLine(CharSequence text, int start, int end, boolean closed) {
+            if (size < offsets.length - 1) {
+                offsets[size++] = start;
+                offsets[size++] = end;
+            }
+        }
+    }
+
+    /**
+     * Puts line offsets into a buffer (starting at its position), packed the same way as
+     * {@link OffsetsArray} does. If not all the lines fit, the buffer position is restored by
+     * {@link #complete()}, so nothing of the buffer is consumed. The sink is reused: it's bound to
+     * a buffer by {@link #reset(IntBuffer)}.
+     */
+    final class OffsetsBuffer implements LineSink {
+
+        private IntBuffer offsets;
+        private int startPosition;
+        private boolean overflowed;
+
+        /**
+         * @param offsets buffer to put the offsets to, <tt>null</tt> to free the sink.
+         */
+        OffsetsBuffer reset(IntBuffer offsets) {
+            this.offsets = offsets;
+            startPosition = offsets == null ? 0 : offsets.position();
+            overflowed = false;
+            return this;
+        }
+
+        boolean isFree() {
+            return offsets == null;
+        }
+
+        @Override
+        public void addLine(CharSequence text, int start, int end, boolean closed) {
+            if (!overflowed && offsets.remaining() > 1) {
+                offsets.put(start).put(end);
+            } else {
+                overflowed = true;
+            }
+        }
+
+        /**
+         * Restores the buffer position if not all the lines have fit.
+         *
+         * @return false if the lines haven't fit.
+         */
+        boolean complete() {
+            if (overflowed) {
+                offsets.position(startPosition);
+            }
+            return !overflowed;
+        }
+    }
+
+    /**
+     * Appends line content to the output (followed by a newline if the line is closed by one).
+     * The sink is reused: it's bound to an output by {@link #reset(Appendable)}.
+     */
+    final class Text implements LineSink {
+
+        private final static char NEWLINE_CHAR = '\n';
+        private final static char SPACE_CHAR = ' ';
+
+        private Appendable out;
+
+        /**
+         * @param out output to append the lines to, <tt>null</tt> to free the sink.
+         */
+        Text reset(Appendable out) {
+            this.out = out;
+            return this;
+        }
+
+        boolean isFree() {
+            return out == null;
+        }
+
+        @Override
+        public void addLine(CharSequence text, int start, int end, boolean closed)
+            throws IOException {
+            // Lines never start or end with spaces, so every run of chars is a word
+            int pos = start;
+            while (pos < end) {
+                int wordStart = pos;
+                while (pos < end && text.charAt(pos) != SPACE_CHAR) {
+                    pos++;
+                }
+                out.append(text, wordStart, pos);
+                if (pos < end) {
+                    out.append(SPACE_CHAR);
+                    while (text.charAt(pos) == SPACE_CHAR) {
+                        pos++;
+                    }
+                }
+            }
+            if (closed) {
+                out.append(NEWLINE_CHAR);
+            }
+        }
+    }
+}
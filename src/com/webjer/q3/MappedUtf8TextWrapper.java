@@ -0,0 +1,359 @@
+package com.webjer.q3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte level implementation of the text wrapping over memory-mapped UTF-8 files.
+ * <p>
+ * The wrapping steps are the same as {@link TextUtils#wrapText(String, int)} makes, but instead of
+ * copying the text char by char the whole runs of word chars are copied at once. Spaces and
+ * newlines are searched 8 bytes at a time (SWAR: a <tt>long</tt> word is XOR-ed with the repeated
+ * delimiter byte and its zero bytes are detected with a couple of arithmetic operations), code
+ * points are counted 8 bytes at a time as well (by counting UTF-8 continuation bytes). Spaces and
+ * newlines never occur within multibyte UTF-8 sequences, so no decoding is ever done.
+ * <p>
+ * Every code point takes a single column, so words are never broken within a code point (invalid
+ * sequences are copied as they are). Files are processed by mapped regions of up to 1 GB which end
+ * on newlines (see {@link ParallelTextWrapper} on the newlines which fit), the regions overlap by
+ * the look ahead distance, so the result doesn't depend on the regions.
+ */
+final class MappedUtf8TextWrapper {
+
+    private final static byte NEWLINE_BYTE = '\n';
+    private final static byte SPACE_BYTE = ' ';
+    private final static int MAX_REGION_SIZE = 1 << 30;
+    private final static int OUTPUT_BUFFER_SIZE = 1 << 20;
+    private final static int MAX_CODE_POINT_BYTES = 4;
+
+    // SWAR constants
+    private final static long ONES = 0x0101010101010101L;
+    private final static long HIGH_BITS = 0x8080808080808080L;
+    private final static long SPACES = ONES * SPACE_BYTE;
+    private final static long NEWLINES = ONES * NEWLINE_BYTE;
+
+    private final int maxCharsPerLine;
+    private final int lookAheadLength;
+    private final WritableByteChannel out;
+    private final ByteBuffer outBuffer =
+        ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private MappedUtf8TextWrapper(int maxCharsPerLine, WritableByteChannel out) {
+        this.maxCharsPerLine = maxCharsPerLine;
+        this.lookAheadLength = MAX_CODE_POINT_BYTES * (maxCharsPerLine + 1);
+        this.out = out;
+    }
+
+    /**
+     * Wraps the source file into the target one (which is created or truncated).
+     */
+    static void wrap(Path source, Path target, int maxCharsPerLine) throws IOException {
+        wrap(source, target, maxCharsPerLine, MAX_REGION_SIZE);
+    }
+
+    /**
+     * Wraps the source file into the target one (which is created or truncated).
+     *
+     * @param maxRegionSize maximal size of the mapped region (excluding the look ahead overlap).
+     */
+    static void wrap(Path source, Path target, int maxCharsPerLine, int maxRegionSize)
+        throws IOException {
+        long overlap = MAX_CODE_POINT_BYTES * ((long) maxCharsPerLine + 1);
+        if (maxRegionSize + overlap > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Max chars per line is too large for mapping.");
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel outChannel = FileChannel.open(target,
+                                                       StandardOpenOption.CREATE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING,
+                                                       StandardOpenOption.WRITE)) {
+            MappedUtf8TextWrapper wrapper = new MappedUtf8TextWrapper(maxCharsPerLine, outChannel);
+            long size = in.size();
+            long start = 0;
+            while (start < size) {
+                long mappedSize = Math.min(size - start, maxRegionSize + overlap);
+                ByteBuffer region = in.map(FileChannel.MapMode.READ_ONLY, start, mappedSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                int end = (int) mappedSize;
+                if (start + mappedSize < size) {
+                    end = findRegionEnd(region, maxRegionSize);
+                }
+                wrapper.wrapRegion(region, end);
+                start += end;
+            }
+            wrapper.flush();
+        }
+    }
+
+    /**
+     * Finds the last newline (following a non-space byte) within the region.
+     *
+     * @return position following the newline.
+     */
+    private static int findRegionEnd(ByteBuffer region, int maxRegionSize) {
+        for (int i = maxRegionSize - 1; i > 0; i--) {
+            if (region.get(i) == NEWLINE_BYTE && region.get(i - 1) != SPACE_BYTE) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Lines longer than the mapped region aren't supported.");
+    }
+
+    /**
+     * Wraps the region bytes till the {@param to} position (the region end or a position
+     * following a newline, which doesn't follow a space). Bytes after it are only looked at.
+     */
+    private void wrapRegion(ByteBuffer text, int to) throws IOException {
+        ByteBuffer source = text.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        // The region end is passed right after a newline only
+        int seekPos = 0;
+        while (seekPos < to) {
+            seekPos = wrapLine(text, source, seekPos, to);
+        }
+    }
+
+    /**
+     * Fills a single output line (the step of the outer loop of TextUtils).
+     *
+     * @return position following the processed bytes.
+     */
+    private int wrapLine(ByteBuffer text, ByteBuffer source, int seekPos, int to)
+        throws IOException {
+        int length = text.limit();
+        int curLineCharsCount = 0;
+        while (seekPos < length && curLineCharsCount < maxCharsPerLine) {
+
+            // Restart line building on newline
+            //----------------------------------
+            byte current = text.get(seekPos);
+            if (current == NEWLINE_BYTE) {
+                seekPos++;
+                curLineCharsCount = 0;
+                put(NEWLINE_BYTE);
+                if (seekPos == to) {
+                    return seekPos;
+                }
+                continue;
+            }
+
+            // Skip single or many spaces (if any)
+            //-------------------------------------
+            boolean itIsNecessaryToAddSpaceChar = false;
+            while (seekPos < length && text.get(seekPos) == SPACE_BYTE) {
+                seekPos++;
+                itIsNecessaryToAddSpaceChar = true;
+            }
+
+            // Find the word chars run (up to a space or newline) once, it gives both the word
+            // width (unless the word goes on after a newline) and the bytes to copy
+            int runEnd = seekPos;
+            int runWidth = 0;
+            if (seekPos < length && text.get(seekPos) != NEWLINE_BYTE) {
+                runEnd = indexOfDelimiter(text, seekPos,
+                                          Math.min(length, seekPos + lookAheadLength), true);
+                runWidth = codePointsCount(text, seekPos, runEnd);
+            }
+
+            // Copy single space (or break the line, see TextUtils)
+            //------------------------------------------------------
+            if (itIsNecessaryToAddSpaceChar && curLineCharsCount > 0) {
+                int wordWidth = runEnd == length || text.get(runEnd) == SPACE_BYTE
+                                ? Math.min(runWidth, maxCharsPerLine + 1)
+                                : wordWidth(text, seekPos, length);
+                if (wordWidth <= maxCharsPerLine
+                    && maxCharsPerLine - curLineCharsCount < wordWidth) {
+                    break;
+                }
+                if (curLineCharsCount < maxCharsPerLine - 1
+                    && seekPos < length
+                    && text.get(seekPos) != NEWLINE_BYTE) {
+                    put(SPACE_BYTE);
+                    curLineCharsCount++;
+                } else {
+                    break;
+                }
+            }
+
+            // Copy the word chars fitting the line
+            //--------------------------------------
+            if (seekPos < length) {
+                if (text.get(seekPos) == NEWLINE_BYTE) {
+                    // Newline following the spaces at the line start is copied as a char
+                    put(NEWLINE_BYTE);
+                    seekPos++;
+                    curLineCharsCount++;
+                } else {
+                    int charsLeft = maxCharsPerLine - curLineCharsCount;
+                    if (runWidth > charsLeft) {
+                        // The run is broken
+                        runEnd = codePointStart(text, seekPos, charsLeft);
+                        runWidth = charsLeft;
+                    }
+                    put(source, seekPos, runEnd);
+                    curLineCharsCount += runWidth;
+                    seekPos = runEnd;
+                }
+            }
+        }
+        // Start a new line when current reached maxCharsPerLine chars (avoid double newlines)
+        //-------------------------------------------------------------------------------------
+        if (seekPos < length) {
+            if (curLineCharsCount == maxCharsPerLine && seekPos + 1 < length) {
+                // Ignore the trailing spaces (up to the last byte)
+                while (text.get(seekPos) == SPACE_BYTE && seekPos + 1 < length) {
+                    seekPos++;
+                }
+            }
+            if (text.get(seekPos) != NEWLINE_BYTE) {
+                put(NEWLINE_BYTE);
+            }
+        }
+        return seekPos;
+    }
+
+    /**
+     * @return position of the code point following the given amount of them.
+     */
+    private static int codePointStart(ByteBuffer text, int from, int codePointsCount) {
+        int codePoints = 0;
+        int pos = from;
+        while (true) {
+            if ((text.get(pos) & 0xC0) != 0x80) {
+                if (codePoints == codePointsCount) {
+                    return pos;
+                }
+                codePoints++;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Counts the columns of the word starting at the position (up to the next space, newlines
+     * are counted as well, see TextUtils), but only as far as it's necessary to know that the
+     * word is longer than the line.
+     */
+    private int wordWidth(ByteBuffer text, int from, int length) {
+        int width = 0;
+        int pos = from;
+        while (pos < length && width <= maxCharsPerLine) {
+            int scanLimit = (int) Math.min(
+                length, pos + (long) MAX_CODE_POINT_BYTES * (maxCharsPerLine + 1 - width)
+            );
+            int space = indexOfDelimiter(text, pos, scanLimit, false);
+            width += codePointsCount(text, pos, space);
+            if (space < scanLimit) {
+                break;
+            }
+            pos = scanLimit;
+        }
+        return Math.min(width, maxCharsPerLine + 1);
+    }
+
+    /**
+     * Finds the first space (or newline) 8 bytes at a time.
+     *
+     * @return position of the delimiter or {@param to} if there's no one.
+     */
+    private static int indexOfDelimiter(ByteBuffer text, int from, int to, boolean newlines) {
+        int pos = from;
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            long word = text.getLong(pos);
+            long found = zeroBytes(word ^ SPACES);
+            if (newlines) {
+                found |= zeroBytes(word ^ NEWLINES);
+            }
+            if (found != 0) {
+                // Little-endian, so the lowest zero byte is the first one (and it's detected
+                // exactly, false positives are possible above it only)
+                return pos + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; pos < to; pos++) {
+            byte value = text.get(pos);
+            if (value == SPACE_BYTE || (newlines && value == NEWLINE_BYTE)) {
+                return pos;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Counts code points (bytes other than <tt>10xxxxxx</tt> continuation ones) 8 bytes at a time.
+     */
+    private static int codePointsCount(ByteBuffer text, int from, int to) {
+        int count = to - from;
+        int pos = from;
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            long word = text.getLong(pos);
+            if ((word & HIGH_BITS) != 0) {
+                // High bit is set and the next one isn't
+                count -= Long.bitCount(word & ~(word << 1) & HIGH_BITS);
+            }
+        }
+        for (; pos < to; pos++) {
+            if ((text.get(pos) & 0xC0) == 0x80) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return word with the high bit set in every byte which is zero in the value (and maybe in
+     * some bytes above the zero ones).
+     */
+    private static long zeroBytes(long value) {
+        return (value - ONES) & ~value & HIGH_BITS;
+    }
+
+    private void put(byte value) throws IOException {
+        if (!outBuffer.hasRemaining()) {
+            flush();
+        }
+        outBuffer.put(value);
+    }
+
+    private void put(ByteBuffer source, int from, int to) throws IOException {
+        int length = to - from;
+        source.clear();
+        if (length <= 2 * Long.BYTES
+            && from + 2 * Long.BYTES <= source.capacity()
+            && outBuffer.remaining() >= 2 * Long.BYTES) {
+            // Short runs (most of the words) are copied by two 8 bytes words, the bytes copied
+            // beyond the run are overwritten by the following output
+            int outPos = outBuffer.position();
+            outBuffer.putLong(outPos, source.getLong(from));
+            outBuffer.putLong(outPos + Long.BYTES, source.getLong(from + Long.BYTES));
+            outBuffer.position(outPos + length);
+            return;
+        }
+        source.position(from);
+        source.limit(to);
+        if (outBuffer.remaining() < to - from) {
+            flush();
+            if (outBuffer.remaining() < to - from) {
+                write(source);
+                return;
+            }
+        }
+        outBuffer.put(source);
+    }
+
+    private void flush() throws IOException {
+        outBuffer.flip();
+        write(outBuffer);
+        outBuffer.clear();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.webjer.q3;
+
+import java.util.Arrays;
+
+/**
+ * Minimum raggedness paragraph breaking.
+ * <p>
+ * The words of a paragraph are added one by one, words longer than the line are split into pieces
+ * of the line length (so every piece but the last one takes a whole line). The breaks are chosen
+ * by dynamic programming: <tt>f(j) = min f(i) + (max - width(i, j))^2</tt> over the lines of words
+ * <tt>i..j-1</tt> which fit. The cost satisfies the quadrangle inequality (the lines which don't
+ * fit just cost infinity), so once a later break point becomes better than an earlier one for
+ * some line end, it stays better for all the following ones. Hence the break point candidates are
+ * kept in a queue, each one with the range of line ends it's the best for, and a new candidate
+ * finds where its range starts by binary search: <tt>O(n log n)</tt> per paragraph instead of
+ * <tt>O(n^2)</tt>.
+ * <p>
+ * The work arrays are grown as necessary and reused for all the paragraphs, the wrapper isn't
+ * thread safe.
+ */
+final class OptimalTextWrapper {
+
+    private final static long INFINITE_COST = Long.MAX_VALUE;
+
+    private final int maxCharsPerLine;
+
+    // Words (and pieces of long words) of the paragraph
+    private int[] wordStarts = new int[64];
+    private int[] wordEnds = new int[64];
+    private int wordsCount;
+
+    // Prefix widths (word lengths plus a space each), minimal costs and the best break points
+    private long[] prefixWidths = new long[65];
+    private long[] costs = new long[65];
+    private int[] breaks = new int[65];
+
+    // Break point candidates queue (and the line ends, once the breaks are found)
+    private int[] candidates = new int[65];
+    private int[] candidateStarts = new int[65];
+
+    OptimalTextWrapper(int maxCharsPerLine) {
+        this.maxCharsPerLine = maxCharsPerLine;
+    }
+
+    /**
+     * Starts a new paragraph.
+     */
+    void clear() {
+        wordsCount = 0;
+    }
+
+    /**
+     * Adds the word (given by its offsets in the text) to the paragraph.
+     */
+    void addWord(int start, int end) {
+        // Long words are split into the pieces of the line length
+        for (int pieceStart = start; pieceStart < end; pieceStart += maxCharsPerLine) {
+            addPiece(pieceStart, Math.min(end, pieceStart + maxCharsPerLine));
+        }
+    }
+
+    private void addPiece(int start, int end) {
+        if (wordsCount == wordStarts.length) {
+            wordStarts = Arrays.copyOf(wordStarts, wordsCount * 2);
+            wordEnds = Arrays.copyOf(wordEnds, wordsCount * 2);
+        }
+        wordStarts[wordsCount] = start;
+        wordEnds[wordsCount] = end;
+        wordsCount++;
+    }
+
+    /**
+     * Breaks the paragraph into lines (a paragraph without words has no lines).
+     *
+     * @param lines lines to add the offsets of the paragraph lines to.
+     */
+    void breakLines(LineOffsets lines) {
+        if (wordsCount == 0) {
+            return;
+        }
+        findBreaks();
+        // The breaks are followed backwards, so the line ends are collected first
+        int linesCount = 0;
+        for (int j = wordsCount; j > 0; j = breaks[j]) {
+            candidates[linesCount++] = j;
+        }
+        int lineStart = 0;
+        for (int line = linesCount - 1; line >= 0; line--) {
+            int lineEnd = candidates[line];
+            lines.add(wordStarts[lineStart], wordEnds[lineEnd - 1]);
+            lineStart = lineEnd;
+        }
+    }
+
+    /**
+     * Fills the best break points, <tt>breaks[j]</tt> is the first word of the line ending before
+     * the word <tt>j</tt> (and <tt>breaks[wordsCount]</tt> is the first word of the last line).
+     */
+    private void findBreaks() {
+        int n = wordsCount;
+        if (prefixWidths.length < n + 1) {
+            int capacity = Math.max(n + 1, prefixWidths.length * 2);
+            prefixWidths = new long[capacity];
+            costs = new long[capacity];
+            breaks = new int[capacity];
+            candidates = new int[capacity];
+            candidateStarts = new int[capacity];
+        }
+        prefixWidths[0] = 0;
+        for (int i = 0; i < n; i++) {
+            prefixWidths[i + 1] = prefixWidths[i] + (wordEnds[i] - wordStarts[i]) + 1;
+        }
+
+        // Lines ending before the words 1..n-1 (the last line is free, so it's handled apart)
+        //-------------------------------------------------------------------------------------
+        costs[0] = 0;
+        int head = 0;
+        int tail = 0;
+        candidates[tail] = 0;
+        candidateStarts[tail++] = 1;
+        for (int j = 1; j < n; j++) {
+            while (tail - head > 1 && candidateStarts[head + 1] <= j) {
+                head++;
+            }
+            breaks[j] = candidates[head];
+            costs[j] = cost(candidates[head], j);
+
+            // Add j as a candidate for the following line ends
+            int start = j + 1;
+            while (tail > head) {
+                int previous = candidates[tail - 1];
+                int previousStart = Math.max(candidateStarts[tail - 1], start);
+                if (previousStart < n && cost(j, previousStart) > cost(previous, previousStart)) {
+                    // j gets better later (if ever), find where
+                    int low = previousStart + 1;
+                    int high = n;
+                    while (low < high) {
+                        int middle = (low + high) >>> 1;
+                        if (cost(j, middle) <= cost(previous, middle)) {
+                            high = middle;
+                        } else {
+                            low = middle + 1;
+                        }
+                    }
+                    start = low;
+                    break;
+                }
+                // j is at least as good for the whole range of the previous candidate
+                tail--;
+            }
+            if (start < n) {
+                candidates[tail] = j;
+                candidateStarts[tail++] = start;
+            }
+        }
+
+        // The last line (it costs nothing, so the best previous break which fits is taken)
+        //----------------------------------------------------------------------------------
+        int best = n - 1;
+        for (int i = n - 1; i >= 0 && width(i, n) <= maxCharsPerLine; i--) {
+            if (costs[i] <= costs[best]) {
+                best = i;
+            }
+        }
+        breaks[n] = best;
+    }
+
+    /**
+     * @return cost of the breaks till the word i plus the cost of the line of words i..j-1.
+     */
+    private long cost(int i, int j) {
+        long width = width(i, j);
+        if (width > maxCharsPerLine || costs[i] == INFINITE_COST) {
+            return INFINITE_COST;
+        }
+        long slack = maxCharsPerLine - width;
+        return costs[i] + slack * slack;
+    }
+
+    private long width(int i, int j) {
+        return prefixWidths[j] - prefixWidths[i] - 1;
+    }
+}
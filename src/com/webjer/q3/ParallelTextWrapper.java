@@ -0,0 +1,128 @@
+package com.webjer.q3;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join implementation of the text wrapping.
+ * <p>
+ * Newlines are the hard break points, so the text is split on them into balanced chunks which are
+ * wrapped independently. Not every newline fits: a newline following spaces may be copied as
+ * a regular char by the sequential algorithm (when the spaces start a line), so only the newlines
+ * following non-space chars are used. Once all the chunks are wrapped, their output offsets are
+ * known and the chunks are copied simultaneously into a single buffer of the exact size.
+ */
+@SuppressWarnings("serial") // The tasks are never serialized
+final class ParallelTextWrapper extends RecursiveAction {
+
+    /**
+     * Amount of chars wrapped by a single leaf task.
+     */
+    private final static int CHUNK_SIZE = 1 << 16;
+
+    private final String text;
+    private final int maxCharsPerLine;
+    private final int from;
+    private final int to;
+
+    // Results: either the leaf output or the subtasks
+    private StringBuilder output;
+    private ParallelTextWrapper left;
+    private ParallelTextWrapper right;
+    private int outputLength;
+
+    private ParallelTextWrapper(String text, int maxCharsPerLine, int from, int to) {
+        this.text = text;
+        this.maxCharsPerLine = maxCharsPerLine;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Wraps the text within the pool.
+     */
+    static String wrap(String text, int maxCharsPerLine, ForkJoinPool pool) {
+        ParallelTextWrapper task = new ParallelTextWrapper(text, maxCharsPerLine, 0, text.length());
+        if (text.length() <= CHUNK_SIZE) {
+            // Not worth forking
+            task.compute();
+            return task.output.toString();
+        }
+        pool.invoke(task);
+        char[] result = new char[task.outputLength];
+        pool.invoke(new JoiningTask(task, result, 0));
+        return new String(result);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > CHUNK_SIZE) {
+            int middle = findSplitPosition(from + ((to - from) >>> 1));
+            if (middle > 0) {
+                left = new ParallelTextWrapper(text, maxCharsPerLine, from, middle);
+                right = new ParallelTextWrapper(text, maxCharsPerLine, middle, to);
+                invokeAll(left, right);
+                outputLength = left.outputLength + right.outputLength;
+                return;
+            }
+            // No newlines to split on, so the chunk is wrapped as a whole
+        }
+        // Output is about the same size as input
+        output = new StringBuilder(to - from + ((to - from) >>> 4));
+        TextUtils.wrapText(text, from, to, maxCharsPerLine, output);
+        outputLength = output.length();
+    }
+
+    /**
+     * Looks for the position to split the chunk on (following a newline which follows a non-space
+     * char), first forward and then backward from the given one.
+     *
+     * @return split position or -1 if there's no such position within the chunk.
+     */
+    private int findSplitPosition(int position) {
+        for (int i = position; i < to - 1; i++) {
+            if (isSplitNewline(i)) {
+                return i + 1;
+            }
+        }
+        for (int i = position - 1; i > from; i--) {
+            if (isSplitNewline(i)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSplitNewline(int position) {
+        return text.charAt(position) == '\n' && text.charAt(position - 1) != ' ';
+    }
+
+    /**
+     * Copies the wrapped chunks to their offsets in the result buffer.
+     */
+    @SuppressWarnings("serial")
+    private final static class JoiningTask extends RecursiveAction {
+
+        private final ParallelTextWrapper wrapper;
+        private final char[] result;
+        private final int offset;
+
+        JoiningTask(ParallelTextWrapper wrapper, char[] result, int offset) {
+            this.wrapper = wrapper;
+            this.result = result;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (wrapper.output != null) {
+                wrapper.output.getChars(0, wrapper.outputLength, result, offset);
+                return;
+            }
+            invokeAll(
+                new JoiningTask(wrapper.left, result, offset),
+                new JoiningTask(wrapper.right, result, offset + wrapper.left.outputLength)
+            );
+        }
+    }
+}
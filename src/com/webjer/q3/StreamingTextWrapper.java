@@ -0,0 +1,178 @@
+package com.webjer.q3;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Streaming implementation of {@link TextUtils#wrapText(String, int)}: the same wrapping steps
+ * are made over the chars read from a <tt>Reader</tt>, the result is written to a <tt>Writer</tt>.
+ * <p>
+ * Wrapping never looks further than <tt>maxCharsPerLine + 1</tt> chars ahead of the current
+ * position (the look ahead for the word length is capped, longer words are broken anyway), so
+ * the chars are kept in a ring buffer of that size plus the read buffer size. The memory used is
+ * bounded by <tt>O(maxCharsPerLine)</tt> whatever the text length is.
+ */
+final class StreamingTextWrapper {
+
+    private final static char NEWLINE_CHAR = '\n';
+    private final static char SPACE_CHAR = ' ';
+    private final static int BUFFER_SIZE = 8192;
+    private final static long MAX_WINDOW_SIZE = 1 << 30;
+
+    private final Reader in;
+    private final Writer out;
+    private final int maxCharsPerLine;
+
+    // Ring buffer holding chars from seekPos (chars before it are never accessed again)
+    private final char[] window;
+    private final int windowMask;
+    private long windowEnd;
+    private boolean inputEnded;
+
+    private final char[] outBuffer = new char[BUFFER_SIZE];
+    private int outSize;
+
+    private long seekPos;
+
+    StreamingTextWrapper(Reader in, Writer out, int maxCharsPerLine) {
+        long windowSize = Long.highestOneBit((long) maxCharsPerLine + 1 + BUFFER_SIZE) << 1;
+        if (windowSize > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Max chars per line is too large for streaming.");
+        }
+        this.in = in;
+        this.out = out;
+        this.maxCharsPerLine = maxCharsPerLine;
+        window = new char[(int) windowSize];
+        windowMask = window.length - 1;
+    }
+
+    /**
+     * Wraps all the chars of the input. Neither the input nor the output is closed.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    void wrap() throws IOException {
+        while (eolNotReached(seekPos)) {
+
+            int curLineCharsCount = 0;
+            while (eolNotReached(seekPos) && curLineCharsCount < maxCharsPerLine) {
+
+                // Restart line building on newline
+                //----------------------------------
+                if (charAt(seekPos) == NEWLINE_CHAR) {
+                    seekPos++;
+                    curLineCharsCount = 0;
+                    write(NEWLINE_CHAR);
+                    continue;
+                }
+
+                // Skip single or many spaces (if any)
+                //-------------------------------------
+                boolean itIsNecessaryToAddSpaceChar = false;
+                while (eolNotReached(seekPos) && charAt(seekPos) == SPACE_CHAR) {
+                    seekPos++;
+                    itIsNecessaryToAddSpaceChar = true;
+                }
+
+                // Copy single space
+                //-------------------
+                if (itIsNecessaryToAddSpaceChar && curLineCharsCount > 0) {
+
+                    // Handle words break (see TextUtils)
+                    //------------------------------------
+                    if (putNonbreakableOnNextLine(curLineCharsCount)) {
+                        break;
+                    }
+
+                    // Handle (copy or ignore) trailing space(s)
+                    //-------------------------------------------
+                    if (curLineCharsCount < maxCharsPerLine - 1
+                        && eolNotReached(seekPos)
+                        && charAt(seekPos) != NEWLINE_CHAR) {
+                        write(SPACE_CHAR);
+                        curLineCharsCount++;
+                    } else {
+                        break;
+                    }
+                }
+
+                // Copy chars
+                //------------
+                if (eolNotReached(seekPos) && curLineCharsCount < maxCharsPerLine) {
+                    write(charAt(seekPos));
+                    curLineCharsCount++;
+                }
+                seekPos++;
+            }
+            // Start a new line when current reached maxCharsPerLine chars (avoid double newlines)
+            //-------------------------------------------------------------------------------------
+            if (eolNotReached(seekPos)) {
+                if (curLineCharsCount == maxCharsPerLine && eolNotReached(seekPos + 1)) {
+                    // Ignore the trailing spaces (up to the last char)
+                    while (charAt(seekPos) == SPACE_CHAR && eolNotReached(seekPos + 1)) {
+                        seekPos++;
+                    }
+                }
+                if (charAt(seekPos) != NEWLINE_CHAR) {
+                    write(NEWLINE_CHAR);
+                }
+            }
+        }
+        out.write(outBuffer, 0, outSize);
+        outSize = 0;
+    }
+
+    /**
+     * Same as the <tt>TextUtils</tt> one, but the look ahead stops as soon as the word is known
+     * to be longer than <tt>maxCharsPerLine</tt> (such a word is broken wherever it starts).
+     */
+    private boolean putNonbreakableOnNextLine(int curLineCharsCount) throws IOException {
+        long lookAheadLimit = seekPos + maxCharsPerLine + 1;
+        long lookAheadPos = seekPos;
+        while (lookAheadPos < lookAheadLimit
+               && eolNotReached(lookAheadPos)
+               && charAt(lookAheadPos) != SPACE_CHAR) {
+            lookAheadPos++;
+        }
+        long currentWordLength = lookAheadPos - seekPos;
+        int symbolsLeftInCurLine = maxCharsPerLine - curLineCharsCount;
+        boolean wordIsNonBreakable = currentWordLength <= maxCharsPerLine;
+        boolean wordWontFitInTheCurrentLine = symbolsLeftInCurLine < currentWordLength;
+
+        return (wordIsNonBreakable && wordWontFitInTheCurrentLine);
+    }
+
+    /**
+     * Checks whether there's a char at the position, reading the input if necessary (the position
+     * should be within <tt>maxCharsPerLine + 1</tt> chars from <tt>seekPos</tt>).
+     */
+    private boolean eolNotReached(long pos) throws IOException {
+        while (pos >= windowEnd) {
+            if (inputEnded) {
+                return false;
+            }
+            int offset = (int) (windowEnd & windowMask);
+            int free = window.length - (int) (windowEnd - seekPos);
+            int read = in.read(window, offset, Math.min(free, window.length - offset));
+            if (read < 0) {
+                inputEnded = true;
+            } else {
+                windowEnd += read;
+            }
+        }
+        return true;
+    }
+
+    private char charAt(long pos) {
+        return window[(int) (pos & windowMask)];
+    }
+
+    private void write(char c) throws IOException {
+        if (outSize == outBuffer.length) {
+            out.write(outBuffer, 0, outSize);
+            outSize = 0;
+        }
+        outBuffer[outSize++] = c;
+    }
+}
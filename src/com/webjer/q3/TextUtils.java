@@ -1,5 +1,16 @@
 package com.webjer.q3;
 
+import com.webjer.MethodMetrics;
+import com.webjer.Metrics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Various handy text processing utility methods class.
  */
@@ -8,6 +19,25 @@ public final class TextUtils {
     private final static char NEWLINE_CHAR = '\n';
     private final static char SPACE_CHAR = ' ';
 
+    // Entry points metrics (see Metrics), the input size is the text length (it isn't recorded
+    // for the files and the streams)
+    private final static MethodMetrics WRAP_TEXT_METRICS =
+        Metrics.register(TextUtils.class, "wrapText(String,int)");
+    private final static MethodMetrics WRAP_TEXT_MODE_METRICS =
+        Metrics.register(TextUtils.class, "wrapText(String,int,WrapMode)");
+    private final static MethodMetrics WRAP_TEXT_PARALLEL_METRICS =
+        Metrics.register(TextUtils.class, "wrapTextParallel(String,int,ForkJoinPool)");
+    private final static MethodMetrics WRAP_UTF8_FILE_METRICS =
+        Metrics.register(TextUtils.class, "wrapUtf8File(Path,Path,int)");
+    private final static MethodMetrics WRAP_TEXT_LINE_OFFSETS_METRICS =
+        Metrics.register(TextUtils.class, "wrapText(CharSequence,int,int[])");
+    private final static MethodMetrics WRAP_TEXT_LINE_OFFSETS_BUFFER_METRICS =
+        Metrics.register(TextUtils.class, "wrapText(CharSequence,int,IntBuffer)");
+    private final static MethodMetrics WRAP_TEXT_APPENDABLE_METRICS =
+        Metrics.register(TextUtils.class, "wrapText(CharSequence,int,Appendable)");
+    private final static MethodMetrics WRAP_TEXT_STREAM_METRICS =
+        Metrics.register(TextUtils.class, "wrapText(Reader,Writer,int)");
+
     private TextUtils() {
     }
 
@@ -37,9 +67,258 @@ public final class TextUtils {
      * @return reformatted text.
      */
     public static String wrapText(String text, int maxCharsPerLine) {
+        return WRAP_TEXT_METRICS.measure(() -> text.length(), () -> wrap(text, maxCharsPerLine));
+    }
+
+    private static String wrap(String text, int maxCharsPerLine) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text can't be null.");
+        }
+        if (maxCharsPerLine < 1) {
+            throw new IllegalArgumentException("Max chars per line should be positive.");
+        }
         StringBuilder sb = new StringBuilder(text.length());
+        wrapText(text, 0, text.length(), maxCharsPerLine, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Warps text according to the same rules as {@link #wrapText(String, int)} does, but the way
+     * the words are fit on the lines depends on the mode:
+     * <ul>
+     * <li>{@link WrapMode#GREEDY} is the same as {@link #wrapText(String, int)};
+     * <li>{@link WrapMode#OPTIMAL} balances the lines of each paragraph (text between newlines):
+     * the sum of squared amounts of chars left free on the lines (but the last line of the
+     * paragraph) is minimal. Words with more than {@param maxCharsPerLine} characters are broken
+     * up into pieces of {@param maxCharsPerLine} characters (each on its own line) and the rest.
+     * </ul>
+     * Optimal wrapping takes <tt>O(n log n)</tt> time for a paragraph of <tt>n</tt> words. Use
+     * {@link WordIndex} to wrap the same text at several widths.
+     *
+     * @param text            A text to wrap (should not contain any whitespace characters other
+     *                        than spaces and newlines).
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param mode            wrapping mode.
+     * @return reformatted text.
+     */
+    public static String wrapText(String text, int maxCharsPerLine, WrapMode mode) {
+        return WRAP_TEXT_MODE_METRICS.measure(() -> text.length(),
+                                              () -> wrap(text, maxCharsPerLine, mode));
+    }
+
+    private static String wrap(String text, int maxCharsPerLine, WrapMode mode) {
+        if (text == null || mode == null) {
+            throw new IllegalArgumentException("Text and mode can't be null.");
+        }
+        if (maxCharsPerLine < 1) {
+            throw new IllegalArgumentException("Max chars per line should be positive.");
+        }
+        if (mode == WrapMode.GREEDY) {
+            return wrap(text, maxCharsPerLine);
+        }
+        return WordIndex.of(text).wrap(maxCharsPerLine, mode);
+    }
+
+    /**
+     * Warps text according to the same rules as {@link #wrapText(String, int)} does, but large
+     * texts are split into chunks (on the newlines) which are wrapped simultaneously within the
+     * given pool. The result is identical to the sequential one.
+     *
+     * @param text            A text to wrap.
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param pool            fork-join pool to wrap the chunks within.
+     * @return reformatted text.
+     */
+    public static String wrapTextParallel(String text, int maxCharsPerLine, ForkJoinPool pool) {
+        return WRAP_TEXT_PARALLEL_METRICS.measure(() -> text.length(), () -> {
+            if (text == null || pool == null) {
+                throw new IllegalArgumentException("Text and pool can't be null.");
+            }
+            if (maxCharsPerLine < 1) {
+                throw new IllegalArgumentException("Max chars per line should be positive.");
+            }
+            return ParallelTextWrapper.wrap(text, maxCharsPerLine, pool);
+        });
+    }
+
+    /**
+     * Wraps the UTF-8 text file according to the same rules as {@link #wrapText(String, int)}
+     * does, writing the result straight to the target file. The file is memory-mapped and
+     * processed at the byte level (runs of word bytes are found and copied 8 bytes at a time), so
+     * large files are wrapped about as fast as they are read and written.
+     * <p>
+     * Every code point takes a single column, so for the texts without supplementary characters
+     * the result is the UTF-8 encoded result of {@link #wrapText(String, int)}.
+     *
+     * @param source          UTF-8 text file to wrap.
+     * @param target          file to write the reformatted text to (created or truncated).
+     * @param maxCharsPerLine amount of maximum characters (code points) per line.
+     * @throws IOException if any file can't be read or written.
+     */
+    public static void wrapUtf8File(Path source, Path target, int maxCharsPerLine)
+        throws IOException {
+        WRAP_UTF8_FILE_METRICS.measure(() -> {
+            if (source == null || target == null) {
+                throw new IllegalArgumentException("Source and target can't be null.");
+            }
+            if (maxCharsPerLine < 1) {
+                throw new IllegalArgumentException("Max chars per line should be positive.");
+            }
+            MappedUtf8TextWrapper.wrap(source, target, maxCharsPerLine);
+            return null;
+        });
+    }
+
+    /**
+     * Finds the lines of the text wrapped according to the same rules as
+     * {@link #wrapText(String, int)} does, without building the result. Line offsets are the
+     * offsets in the text of the line first char and past its last char, the line content is the
+     * text between them with every run of spaces replaced by a single space (an empty line has the
+     * same start and end). The lines are separated by newlines, so the text without newlines is
+     * a single line.
+     * <p>
+     * The same array may be reused for wrapping many texts. If the array is too small (the returned
+     * amount of lines is greater than a half of its length), only the first lines are written:
+     * the text should be wrapped again into an array of twice the returned amount at least.
+     *
+     * @param text            A text to wrap (should not contain any whitespace characters other
+     *                        than spaces and newlines).
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param lineOffsets     array to write line offsets to, packed as
+     *                        <tt>start0, end0, start1, end1, ...</tt>
+     * @return amount of lines (including the ones which haven't fit).
+     */
+    public static int wrapText(CharSequence text, int maxCharsPerLine, int[] lineOffsets) {
+        return WRAP_TEXT_LINE_OFFSETS_METRICS.measure(() -> text.length(), () -> {
+            if (lineOffsets == null) {
+                throw new IllegalArgumentException("Line offsets can't be null.");
+            }
+            LineSink.OffsetsArray sink = Sinks.offsetsArray(lineOffsets);
+            try {
+                return breakLines(text, maxCharsPerLine, sink);
+            } finally {
+                sink.reset(null);
+            }
+        });
+    }
+
+    /**
+     * Finds the lines of the wrapped text (see {@link #wrapText(CharSequence, int, int[])}),
+     * putting their offsets into the buffer (starting at its position). If the buffer has no room
+     * for all the lines, its position is left as is (and the returned amount of lines is greater
+     * than a half of its remaining).
+     *
+     * @param text            A text to wrap.
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param lineOffsets     buffer to put line offsets to, packed as
+     *                        <tt>start0, end0, start1, end1, ...</tt>
+     * @return amount of lines (including the ones which haven't fit).
+     */
+    public static int wrapText(CharSequence text, int maxCharsPerLine, IntBuffer lineOffsets) {
+        return WRAP_TEXT_LINE_OFFSETS_BUFFER_METRICS.measure(() -> text.length(), () -> {
+            if (lineOffsets == null) {
+                throw new IllegalArgumentException("Line offsets can't be null.");
+            }
+            LineSink.OffsetsBuffer sink = Sinks.offsetsBuffer(lineOffsets);
+            try {
+                int linesCount = breakLines(text, maxCharsPerLine, sink);
+                sink.complete();
+                return linesCount;
+            } finally {
+                sink.reset(null);
+            }
+        });
+    }
 
-        int seekPos = 0;
+    /**
+     * Wraps text according to the same rules as {@link #wrapText(String, int)} does, appending
+     * the result to the output (e.g. a <tt>CharBuffer</tt> or a reused <tt>StringBuilder</tt>)
+     * instead of building a new <tt>String</tt>.
+     *
+     * @param text            A text to wrap.
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param out             output to append the reformatted text to.
+     * @throws IOException if appending fails.
+     */
+    public static void wrapText(CharSequence text, int maxCharsPerLine, Appendable out)
+        throws IOException {
+        WRAP_TEXT_APPENDABLE_METRICS.measure(() -> text.length(), () -> {
+            if (out == null) {
+                throw new IllegalArgumentException("Output can't be null.");
+            }
+            if (text == null) {
+                throw new IllegalArgumentException("Text can't be null.");
+            }
+            if (maxCharsPerLine < 1) {
+                throw new IllegalArgumentException("Max chars per line should be positive.");
+            }
+            LineSink.Text sink = Sinks.text(out);
+            try {
+                breakLines(text, 0, text.length(), maxCharsPerLine, sink);
+            } finally {
+                sink.reset(null);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Finds the lines of the wrapped text (the same ones as {@link #wrapText(String, int)} makes)
+     * and passes them to the sink.
+     *
+     * @return amount of lines.
+     */
+    private static int breakLines(CharSequence text, int maxCharsPerLine, LineSink sink) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text can't be null.");
+        }
+        if (maxCharsPerLine < 1) {
+            throw new IllegalArgumentException("Max chars per line should be positive.");
+        }
+        try {
+            return breakLines(text, 0, text.length(), maxCharsPerLine, sink);
+        } catch (IOException e) {
+            // Only appending may fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wraps the text region starting from the {@param from} position (the text start or the
+     * position following a newline, which doesn't follow a space) till the {@param to} one
+     * (the text end or a position of the same kind). Chars outside the region may be looked at,
+     * but only the chars of the region are wrapped, so the regions are wrapped independently.
+     *
+     * @param sb output to append the wrapped region to.
+     */
+    static void wrapText(String text, int from, int to, int maxCharsPerLine, StringBuilder sb) {
+        LineSink.Text sink = Sinks.text(sb);
+        try {
+            breakLines(text, from, to, maxCharsPerLine, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            sink.reset(null);
+        }
+    }
+
+    /**
+     * Finds the lines of the wrapped text region (see
+     * {@link #wrapText(String, int, int, int, StringBuilder)}) and passes them to the sink.
+     *
+     * @return amount of lines (a region ending before the text end has no last unclosed line).
+     * @throws IOException if appending to the sink fails.
+     */
+    private static int breakLines(CharSequence text,
+                                  int from,
+                                  int to,
+                                  int maxCharsPerLine,
+                                  LineSink sink) throws IOException {
+        int line = 0;
+        // Offsets of the current line (start is negative while the line is empty)
+        int lineStart = -1;
+        int lineEnd = -1;
+        int seekPos = from;
         while (eolNotReached(text, seekPos)) {
 
             int curLineCharsCount = 0;
@@ -48,9 +327,15 @@ public final class TextUtils {
                 // Restart line building on newline
                 //----------------------------------
                 if (text.charAt(seekPos) == NEWLINE_CHAR) {
+                    addLine(sink, text, lineStart, lineEnd, seekPos, true);
+                    line++;
+                    lineStart = -1;
                     seekPos++;
                     curLineCharsCount = 0;
-                    sb.append(NEWLINE_CHAR);
+                    if (seekPos == to && to < text.length()) {
+                        // Region end (it's always reached right after a newline)
+                        return line;
+                    }
                     continue;
                 }
 
@@ -90,8 +375,11 @@ public final class TextUtils {
                         && text.charAt(seekPos) != NEWLINE_CHAR
                         ) {
 
-                        // Copy space char
-                        sb.append(SPACE_CHAR);
+                        // Copy space char (the last one of the spaces run)
+                        if (lineStart < 0) {
+                            lineStart = seekPos - 1;
+                        }
+                        lineEnd = seekPos;
                         curLineCharsCount++;
 
                     } else {
@@ -106,7 +394,17 @@ public final class TextUtils {
                     // There's a place for words in current line
                     && curLineCharsCount < maxCharsPerLine
                     ) {
-                    sb.append(text.charAt(seekPos));
+                    if (text.charAt(seekPos) == NEWLINE_CHAR) {
+                        // Newline following the spaces which start a line
+                        addLine(sink, text, lineStart, lineEnd, seekPos, true);
+                        line++;
+                        lineStart = -1;
+                    } else {
+                        if (lineStart < 0) {
+                            lineStart = seekPos;
+                        }
+                        lineEnd = seekPos + 1;
+                    }
                     curLineCharsCount++;
                 }
                 seekPos++;
@@ -123,20 +421,68 @@ public final class TextUtils {
                     && seekPos < text.length() - 1
                     ) {
 
-                    // Ignore the trailing spaces
+                    // Ignore the trailing spaces (up to the last char, so the text ending with
+                    // spaces isn't overrun)
                     while (text.charAt(seekPos) == SPACE_CHAR) {
-                        if (weAreAtEol(text, seekPos)) {
+                        if (weAreAtEol(text, seekPos + 1)) {
                             break;
                         }
                         seekPos++;
                     }
                 }
                 if (text.charAt(seekPos) != NEWLINE_CHAR) {
-                    sb.append(NEWLINE_CHAR);
+                    addLine(sink, text, lineStart, lineEnd, seekPos, true);
+                    line++;
+                    lineStart = -1;
                 }
             }
         }
-        return sb.toString();
+        // The last char may have been skipped past the text end
+        addLine(sink, text, lineStart, lineEnd, text.length(), false);
+        line++;
+        return line;
+    }
+
+    /**
+     * Passes the line to the sink.
+     *
+     * @param emptyPos offset to use for the empty line (its start is negative).
+     */
+    private static void addLine(LineSink sink,
+                                CharSequence text,
+                                int start,
+                                int end,
+                                int emptyPos,
+                                boolean closed) throws IOException {
+        if (start < 0) {
+            start = emptyPos;
+            end = emptyPos;
+        }
+        sink.addLine(text, start, end, closed);
+    }
+
+    /**
+     * Wraps the text read from the input according to the same rules as
+     * {@link #wrapText(String, int)} does, writing the result to the output as it goes. The whole
+     * text is never kept in memory: only <tt>O(maxCharsPerLine)</tt> chars are buffered, so texts
+     * of any size may be wrapped.
+     *
+     * @param in              text to wrap (read till the end, but not closed).
+     * @param out             output to write the reformatted text to (not flushed or closed).
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @throws IOException if reading or writing fails.
+     */
+    public static void wrapText(Reader in, Writer out, int maxCharsPerLine) throws IOException {
+        WRAP_TEXT_STREAM_METRICS.measure(() -> {
+            if (in == null || out == null) {
+                throw new IllegalArgumentException("Input and output can't be null.");
+            }
+            if (maxCharsPerLine < 1) {
+                throw new IllegalArgumentException("Max chars per line should be positive.");
+            }
+            new StreamingTextWrapper(in, out, maxCharsPerLine).wrap();
+            return null;
+        });
     }
 
     /**
@@ -146,7 +492,7 @@ public final class TextUtils {
      * @param seekPos position within {@param text}.
      * @return true if not pointing, false otherwise.
      */
-    private static boolean eolNotReached(String text, int seekPos) {
+    private static boolean eolNotReached(CharSequence text, int seekPos) {
         return seekPos < text.length();
     }
 
@@ -157,7 +503,7 @@ public final class TextUtils {
      * @param seekPos position within {@param text}.
      * @return true if pointing, false otherwise.
      */
-    private static boolean weAreAtEol(String text, int seekPos) {
+    private static boolean weAreAtEol(CharSequence text, int seekPos) {
         return !eolNotReached(text, seekPos);
     }
 
@@ -172,7 +518,7 @@ public final class TextUtils {
      * @return true if current word is non-breakable and it should be broken (won't fit in the
      * string size limit), false otherwise.
      */
-    private static boolean putNonbreakableOnNextLine(String text,
+    private static boolean putNonbreakableOnNextLine(CharSequence text,
                                                      int maxCharsPerLine,
                                                      int seekPos,
                                                      int curLineCharsCount) {
@@ -191,4 +537,34 @@ public final class TextUtils {
 
         return (wordIsNonBreakable && wordWontFitInTheCurrentLine);
     }
+
+    /**
+     * Line sinks reused by the calls made in a thread, so the steady-state calls allocate nothing.
+     * A sink already in use (e.g. by a call made from the text <tt>charAt</tt> or from the output)
+     * isn't shared, a new one is created instead. The taken sink is freed by resetting it to
+     * <tt>null</tt>.
+     */
+    private final static class Sinks {
+
+        private final static ThreadLocal<Sinks> SINKS = ThreadLocal.withInitial(Sinks::new);
+
+        private final LineSink.OffsetsArray offsetsArray = new LineSink.OffsetsArray();
+        private final LineSink.OffsetsBuffer offsetsBuffer = new LineSink.OffsetsBuffer();
+        private final LineSink.Text text = new LineSink.Text();
+
+        static LineSink.OffsetsArray offsetsArray(int[] offsets) {
+            LineSink.OffsetsArray sink = SINKS.get().offsetsArray;
+            return (sink.isFree() ? sink : new LineSink.OffsetsArray()).reset(offsets);
+        }
+
+        static LineSink.OffsetsBuffer offsetsBuffer(IntBuffer offsets) {
+            LineSink.OffsetsBuffer sink = SINKS.get().offsetsBuffer;
+            return (sink.isFree() ? sink : new LineSink.OffsetsBuffer()).reset(offsets);
+        }
+
+        static LineSink.Text text(Appendable out) {
+            LineSink.Text sink = SINKS.get().text;
+            return (sink.isFree() ? sink : new LineSink.Text()).reset(out);
+        }
+    }
 }
@@ -1,10 +1,26 @@
 package com.webjer.q3;
 
+import com.webjer.PerformanceGauge;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * {@link TextUtils} runner class.
  */
 public class TextUtilsRunner {
 
+    private final static int WARMUP_ITERATIONS = 1;
+    private final static int MEASUREMENT_ITERATIONS = 3;
+
     public static void main(String[] args) {
         performSimpleTest(
             "         its a__    very  important__  a text_text___    the   "
@@ -19,15 +35,201 @@ public class TextUtilsRunner {
             "    The the   ab    text_text    text1text2   \n\n    long_and_bo\n\n"
             + "ring_nonsence_here__     the_end   ",
             10);
+
+        performWordIndexTest();
+        performCacheTest();
+        performHeavyTest();
     }
 
     private static void performSimpleTest(String text, int maxCharsPerLine) {
+        String result = TextUtils.wrapText(text, maxCharsPerLine);
+        StringWriter streamingResult = new StringWriter();
+        try {
+            TextUtils.wrapText(new StringReader(text), streamingResult, maxCharsPerLine);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         System.out.println("\n=[ " + maxCharsPerLine + " chars ]=============================\n"
                            + text
                            + "\n"
                            + "-[ result ]-------------------------------\n"
-                           + TextUtils.wrapText(text, maxCharsPerLine)
+                           + result
+                           + "\n-[ streaming result is identical: "
+                           + result.equals(streamingResult.toString()) + " ]"
+                           + "\n-[ optimal result ]-----------------------\n"
+                           + TextUtils.wrapText(text, maxCharsPerLine, WrapMode.OPTIMAL)
                            + "\n==========================================\n");
     }
 
+    private static void performCacheTest() {
+        System.out.println("\nNow wrapping templates through the cache... ");
+        Random random = new Random(1);
+        String[] templates = new String[2000];
+        for (int i = 0; i < templates.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 2000) {
+                int wordLength = 1 + random.nextInt(12);
+                for (int j = 0; j < wordLength; j++) {
+                    sb.append((char) ('a' + random.nextInt(26)));
+                }
+                sb.append(random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+            templates[i] = sb.toString();
+        }
+        int[] widths = {40, 80, 120};
+        // Skewed towards the first templates, a half of them fits the cache
+        int[] requests = new int[1_000_000];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = (int) (templates.length * Math.pow(random.nextDouble(), 3));
+        }
+        WrapTextCache cache = new WrapTextCache(templates.length * widths.length * 4000L);
+        // Every request is an iteration, so the hits and the misses make the percentiles
+        int[] next = new int[1];
+        new PerformanceGauge(
+            () -> {
+                int i = next[0]++ % requests.length;
+                cache.wrapText(templates[requests[i]], widths[i % widths.length]);
+            },
+            requests.length / 10,
+            requests.length
+        ).measureAndPrint("Completed a cached wrapping");
+        System.out.println("Cache: " + cache);
+        new PerformanceGauge(
+            () -> {
+                int i = next[0]++ % requests.length;
+                TextUtils.wrapText(templates[requests[i]], widths[i % widths.length]);
+            },
+            requests.length / 100,
+            requests.length / 10
+        ).measureAndPrint("Completed a wrapping without cache");
+    }
+
+    /**
+     * Compares the greedy wrapping from a word index with {@link TextUtils#wrapText(String, int)}
+     * over short random texts (runs of spaces and newlines included) at random widths.
+     */
+    private static void performWordIndexTest() {
+        Random random = new Random(1);
+        int differencesCount = 0;
+        int[] expectedOffsets = new int[256];
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int length = random.nextInt(80); sb.length() < length; ) {
+                int c = random.nextInt(10);
+                sb.append(c == 0 ? '\n' : c < 4 ? ' ' : (char) ('a' + random.nextInt(4)));
+            }
+            String text = sb.toString();
+            int[] widths = {1 + random.nextInt(3), 1 + random.nextInt(8), 1 + random.nextInt(20)};
+            WordIndex index = WordIndex.of(text);
+            String[] results = index.wrap(widths, WrapMode.GREEDY);
+            int[][] lineOffsets = index.lineOffsets(widths, WrapMode.GREEDY);
+            for (int j = 0; j < widths.length; j++) {
+                int linesCount = TextUtils.wrapText(text, widths[j], expectedOffsets);
+                if (!results[j].equals(TextUtils.wrapText(text, widths[j]))
+                    || !Arrays.equals(lineOffsets[j],
+                                      Arrays.copyOf(expectedOffsets, linesCount * 2))) {
+                    differencesCount++;
+                }
+            }
+        }
+        System.out.println("Word index greedy wrapping differences: " + differencesCount);
+    }
+
+    private static void performHeavyTest() {
+        System.out.print("\nNow generating a large text for heavy load test... ");
+        final int LENGTH = 100_000_000;
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder(LENGTH);
+        while (sb.length() < LENGTH) {
+            int wordLength = 1 + random.nextInt(12);
+            for (int i = 0; i < wordLength; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            sb.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        String text = sb.toString();
+        System.out.println("Done. Running the test... ");
+
+        String[] results = new String[2];
+        new PerformanceGauge(
+            () -> results[0] = TextUtils.wrapText(text, 80),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
+        ).measureAndPrint();
+        new PerformanceGauge(
+            () -> results[1] = TextUtils.wrapTextParallel(text, 80, ForkJoinPool.commonPool()),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
+        ).measureAndPrint("Completed in parallel");
+        System.out.println("Parallel result is identical: " + results[0].equals(results[1]));
+        int[] lineOffsets = new int[text.length() / 8];
+        int[] linesCount = new int[1];
+        new PerformanceGauge(
+            () -> linesCount[0] = TextUtils.wrapText(text, 80, lineOffsets),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
+        ).measureAndPrint("Completed finding line offsets");
+        long newlinesCount = results[0].chars().filter(c -> c == '\n').count();
+        System.out.println("Lines count is identical: " + (linesCount[0] == newlinesCount + 1));
+        new PerformanceGauge(
+            () -> results[1] = TextUtils.wrapText(text, 80, WrapMode.OPTIMAL),
+            WARMUP_ITERATIONS,
+            MEASUREMENT_ITERATIONS
+        ).measureAndPrint("Completed optimal wrapping");
+        int[] widths = {20, 40, 80, 120};
+        new PerformanceGauge(() -> {
+            for (int width : widths) {
+                results[1] = TextUtils.wrapText(text, width, WrapMode.OPTIMAL);
+            }
+        }).measureAndPrint("Completed optimal wrapping at " + widths.length + " widths one by one");
+        new PerformanceGauge(
+            () -> WordIndex.of(text).wrap(widths, WrapMode.OPTIMAL)
+        ).measureAndPrint("Completed optimal wrapping at " + widths.length
+                          + " widths from a word index");
+        new PerformanceGauge(() -> {
+            for (int width : widths) {
+                results[1] = TextUtils.wrapText(text, width);
+            }
+        }).measureAndPrint("Completed greedy wrapping at " + widths.length + " widths one by one");
+        new PerformanceGauge(
+            () -> WordIndex.of(text).wrap(widths, WrapMode.GREEDY)
+        ).measureAndPrint("Completed greedy wrapping at " + widths.length
+                          + " widths from a word index");
+        WordIndex index = WordIndex.of(text);
+        boolean indexResultsIdentical = true;
+        for (int width : widths) {
+            indexResultsIdentical &=
+                index.wrap(width, WrapMode.GREEDY).equals(TextUtils.wrapText(text, width));
+        }
+        System.out.println("Word index results are identical: " + indexResultsIdentical);
+
+        try {
+            Path source = Files.createTempFile("wrap", ".txt");
+            Path target = Files.createTempFile("wrap", ".out");
+            try {
+                Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+                new PerformanceGauge(
+                    () -> {
+                        try {
+                            TextUtils.wrapUtf8File(source, target, 80);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    WARMUP_ITERATIONS,
+                    MEASUREMENT_ITERATIONS
+                ).measureAndPrint("Completed over mapped file");
+                System.out.println(
+                    "Mapped file result is identical: "
+                    + results[0].equals(new String(Files.readAllBytes(target),
+                                                   StandardCharsets.UTF_8))
+                );
+            } finally {
+                Files.delete(source);
+                Files.delete(target);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,357 @@
+package com.webjer.q3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Words and newlines of a text, tokenized once to be wrapped at many widths.
+ * <p>
+ * The tokens are kept in a single <tt>int[]</tt> as pairs of the token offset and length (a
+ * newline token has zero length, words are never empty), so the index takes 8 bytes per word and
+ * is immutable: it may be cached and shared between threads.
+ * <p>
+ * Wrapping gives the same results as {@link TextUtils#wrapText(String, int, WrapMode)} does. Both
+ * modes run over the tokens, so the text is tokenized once for all the widths. The greedy wrapping
+ * follows the char level rules of {@link TextUtils#wrapText(String, int)} step by step, but it
+ * jumps over whole words and space runs (the gaps between the tokens) instead of going char by
+ * char.
+ */
+public final class WordIndex {
+
+    private final static char NEWLINE_CHAR = '\n';
+    private final static char SPACE_CHAR = ' ';
+
+    private final String text;
+    private final int[] tokens;
+
+    private WordIndex(String text, int[] tokens) {
+        this.text = text;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Tokenizes the text.
+     *
+     * @param text A text to wrap (should not contain any whitespace characters other than spaces
+     *             and newlines).
+     * @return index of the text words and newlines.
+     */
+    public static WordIndex of(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text can't be null.");
+        }
+        int[] tokens = new int[16];
+        int size = 0;
+        int pos = 0;
+        int length = text.length();
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == SPACE_CHAR) {
+                pos++;
+                continue;
+            }
+            int start = pos++;
+            if (c != NEWLINE_CHAR) {
+                while (pos < length
+                       && (c = text.charAt(pos)) != SPACE_CHAR
+                       && c != NEWLINE_CHAR) {
+                    pos++;
+                }
+            }
+            if (size == tokens.length) {
+                tokens = Arrays.copyOf(tokens, size * 2);
+            }
+            tokens[size++] = start;
+            tokens[size++] = text.charAt(start) == NEWLINE_CHAR ? 0 : pos - start;
+        }
+        return new WordIndex(text, Arrays.copyOf(tokens, size));
+    }
+
+    /**
+     * @return the tokenized text.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return amount of the tokens (words and newlines).
+     */
+    public int size() {
+        return tokens.length >>> 1;
+    }
+
+    /**
+     * @return offset of the token in the text.
+     */
+    public int tokenStart(int token) {
+        return tokens[token << 1];
+    }
+
+    /**
+     * @return length of the word, zero for a newline.
+     */
+    public int tokenLength(int token) {
+        return tokens[(token << 1) + 1];
+    }
+
+    /**
+     * Wraps the text.
+     *
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param mode            wrapping mode.
+     * @return reformatted text.
+     */
+    public String wrap(int maxCharsPerLine, WrapMode mode) {
+        return wrap(new int[]{maxCharsPerLine}, mode)[0];
+    }
+
+    /**
+     * Wraps the text at each of the widths.
+     *
+     * @param maxCharsPerLine amounts of maximum characters per line.
+     * @param mode            wrapping mode.
+     * @return reformatted texts (one per width, in the same order).
+     */
+    public String[] wrap(int[] maxCharsPerLine, WrapMode mode) {
+        checkArguments(maxCharsPerLine, mode);
+        String[] results = new String[maxCharsPerLine.length];
+        LineOffsets lines = new LineOffsets();
+        StringBuilder sb = new StringBuilder(text.length());
+        LineSink.Text sink = new LineSink.Text().reset(sb);
+        for (int i = 0; i < results.length; i++) {
+            lines.clear();
+            breakLines(maxCharsPerLine[i], mode, lines);
+            sb.setLength(0);
+            try {
+                for (int line = 0, count = lines.linesCount(); line < count; line++) {
+                    // Every line but the last one is followed by a newline
+                    sink.addLine(text, lines.lineStart(line), lines.lineEnd(line),
+                                 line < count - 1);
+                }
+            } catch (IOException e) {
+                // StringBuilder doesn't throw
+                throw new UncheckedIOException(e);
+            }
+            results[i] = sb.toString();
+        }
+        return results;
+    }
+
+    /**
+     * Finds the lines of the wrapped text. Line offsets are the offsets in the source text of its
+     * first and past its last char, the line content is the text between them with the spaces
+     * squeezed. Every newline of the text starts a new line, an empty line has the same start and
+     * end.
+     *
+     * @param maxCharsPerLine amount of maximum characters per line.
+     * @param mode            wrapping mode.
+     * @return line offsets packed as <tt>start0, end0, start1, end1, ...</tt>
+     */
+    public int[] lineOffsets(int maxCharsPerLine, WrapMode mode) {
+        return lineOffsets(new int[]{maxCharsPerLine}, mode)[0];
+    }
+
+    /**
+     * Finds the lines of the text wrapped at each of the widths (see
+     * {@link #lineOffsets(int, WrapMode)}).
+     *
+     * @param maxCharsPerLine amounts of maximum characters per line.
+     * @param mode            wrapping mode.
+     * @return packed line offsets (one array per width, in the same order).
+     */
+    public int[][] lineOffsets(int[] maxCharsPerLine, WrapMode mode) {
+        checkArguments(maxCharsPerLine, mode);
+        int[][] results = new int[maxCharsPerLine.length][];
+        LineOffsets lines = new LineOffsets();
+        for (int i = 0; i < results.length; i++) {
+            lines.clear();
+            breakLines(maxCharsPerLine[i], mode, lines);
+            results[i] = lines.toArray();
+        }
+        return results;
+    }
+
+    private static void checkArguments(int[] maxCharsPerLine, WrapMode mode) {
+        if (maxCharsPerLine == null || mode == null) {
+            throw new IllegalArgumentException("Widths and mode can't be null.");
+        }
+        for (int width : maxCharsPerLine) {
+            if (width < 1) {
+                throw new IllegalArgumentException("Max chars per line should be positive.");
+            }
+        }
+    }
+
+    /**
+     * Adds the lines of the wrapped text (every paragraph has at least one line).
+     */
+    void breakLines(int maxCharsPerLine, WrapMode mode, LineOffsets lines) {
+        if (mode == WrapMode.GREEDY) {
+            breakLinesGreedily(maxCharsPerLine, lines);
+            return;
+        }
+        OptimalTextWrapper optimal = new OptimalTextWrapper(maxCharsPerLine);
+        int paragraphStart = 0;
+        int linesCount = lines.linesCount();
+        for (int token = 0, size = size(); token <= size; token++) {
+            if (token == size || tokenLength(token) == 0) {
+                // Paragraph end
+                //---------------
+                optimal.breakLines(lines);
+                optimal.clear();
+                if (lines.linesCount() == linesCount) {
+                    lines.add(paragraphStart, paragraphStart);
+                }
+                if (token < size) {
+                    paragraphStart = tokenStart(token) + 1;
+                    linesCount = lines.linesCount();
+                }
+                continue;
+            }
+            int wordStart = tokenStart(token);
+            optimal.addWord(wordStart, wordStart + tokenLength(token));
+        }
+    }
+
+    /**
+     * Adds the lines the char level breaker of {@link TextUtils#wrapText(String, int)} makes. The
+     * steps and the conditions are the same (see the comments there), but the position moves over
+     * a whole space run or as many chars of a word as fit at once. The chars are never looked at:
+     * a position is in a space run if it's before the start of the token it belongs to.
+     */
+    private void breakLinesGreedily(int maxCharsPerLine, LineOffsets lines) {
+        int length = text.length();
+        int size = size();
+        // Offsets of the current line (start is negative while the line is empty)
+        int lineStart = -1;
+        int lineEnd = -1;
+        int pos = 0;
+        // The first token ending after the position
+        int token = 0;
+        while (pos < length) {
+
+            int curLineCharsCount = 0;
+            while (pos < length && curLineCharsCount < maxCharsPerLine) {
+
+                // Restart line building on newline
+                //----------------------------------
+                if (isNewlineAt(token, pos)) {
+                    addLine(lines, lineStart, lineEnd, pos);
+                    lineStart = -1;
+                    pos++;
+                    token++;
+                    curLineCharsCount = 0;
+                    continue;
+                }
+
+                // Skip the spaces run (if any)
+                //------------------------------
+                int runEnd = token < size ? tokenStart(token) : length;
+                boolean spaceSkipped = pos < runEnd;
+                pos = Math.max(pos, runEnd);
+
+                if (spaceSkipped && curLineCharsCount > 0) {
+                    // Words break: the look ahead word runs till the next space (it goes on
+                    // through the newlines and the words right after them)
+                    int wordLength = token < size ? lookAheadEnd(token) - pos : 0;
+                    if (wordLength <= maxCharsPerLine
+                        && maxCharsPerLine - curLineCharsCount < wordLength) {
+                        break;
+                    }
+                    // Copy a single space if a char fits after it, ignore the trailing spaces
+                    if (curLineCharsCount < maxCharsPerLine - 1
+                        && pos < length
+                        && !isNewlineAt(token, pos)) {
+                        if (lineStart < 0) {
+                            lineStart = pos - 1;
+                        }
+                        lineEnd = pos;
+                        curLineCharsCount++;
+                    } else {
+                        break;
+                    }
+                }
+
+                // Copy chars
+                //------------
+                if (pos >= length) {
+                    break;
+                }
+                if (isNewlineAt(token, pos)) {
+                    // Newline following the spaces which start a line (it takes a line char)
+                    addLine(lines, lineStart, lineEnd, pos);
+                    lineStart = -1;
+                    curLineCharsCount++;
+                    pos++;
+                    token++;
+                } else {
+                    int wordEnd = tokenStart(token) + tokenLength(token);
+                    int copied = Math.min(wordEnd - pos, maxCharsPerLine - curLineCharsCount);
+                    if (lineStart < 0) {
+                        lineStart = pos;
+                    }
+                    pos += copied;
+                    lineEnd = pos;
+                    curLineCharsCount += copied;
+                    if (pos == wordEnd) {
+                        token++;
+                    }
+                }
+            }
+            // Start a new line when current reached maxCharsPerLine chars
+            //-------------------------------------------------------------
+            if (pos < length) {
+                if (curLineCharsCount == maxCharsPerLine && pos < length - 1) {
+                    // Ignore the trailing spaces (up to the last char)
+                    int runEnd = token < size ? tokenStart(token) : length;
+                    if (pos < runEnd) {
+                        pos = Math.min(runEnd, length - 1);
+                    }
+                }
+                if (!isNewlineAt(token, pos)) {
+                    addLine(lines, lineStart, lineEnd, pos);
+                    lineStart = -1;
+                }
+            }
+        }
+        addLine(lines, lineStart, lineEnd, length);
+    }
+
+    /**
+     * @return true if the position is the one of the newline token.
+     */
+    private boolean isNewlineAt(int token, int pos) {
+        return token < size() && tokenStart(token) == pos && tokenLength(token) == 0;
+    }
+
+    /**
+     * @return offset past the tokens following each other without spaces, starting from the token.
+     */
+    private int lookAheadEnd(int token) {
+        int end = tokenEnd(token);
+        for (int size = size(); token + 1 < size && tokenStart(token + 1) == end; token++) {
+            end = tokenEnd(token + 1);
+        }
+        return end;
+    }
+
+    private int tokenEnd(int token) {
+        int length = tokenLength(token);
+        return tokenStart(token) + (length == 0 ? 1 : length);
+    }
+
+    /**
+     * Adds the line.
+     *
+     * @param emptyPos offset to use for the empty line (its start is negative).
+     */
+    private static void addLine(LineOffsets lines, int start, int end, int emptyPos) {
+        if (start < 0) {
+            lines.add(emptyPos, emptyPos);
+        } else {
+            lines.add(start, end);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.webjer.q3;
+
+/**
+ * Text wrapping modes (see {@link TextUtils#wrapText(String, int, WrapMode)}).
+ */
+public enum WrapMode {
+
+    /**
+     * Words are fit as many as possible on a line before starting a new line.
+     */
+    GREEDY,
+
+    /**
+     * Lines of every paragraph are balanced: the sum of squared trailing slacks of the lines (the
+     * last line of a paragraph excluded) is minimal.
+     */
+    OPTIMAL
+}
@@ -0,0 +1,318 @@
+package com.webjer.q3;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the wrapped texts, for the same texts wrapped at the same widths again and
+ * again (e.g. templates). Thread safe.
+ * <p>
+ * The cache is split into stripes (by the key hash), each one with its own share of the capacity.
+ * A stripe keeps its entries in a <tt>ConcurrentHashMap</tt>, so reads take no locks: a hit just
+ * marks the entry as accessed. The eviction policy is segmented LRU: new entries go to the
+ * probation segment and the ones accessed while there are promoted to the protected segment (80%
+ * of the capacity), which demotes its least recently promoted entries back to probation. The
+ * promotions are deferred till the eviction (made under the stripe lock), so the order of the
+ * accessed entries within a segment is approximated the CLOCK way: an accessed entry reaching the
+ * segment head gets a second chance.
+ * <p>
+ * Capacity is the weight of the entries in bytes: both the text and the result chars are counted
+ * (2 bytes each) plus a fixed overhead per entry. The results heavier than a stripe capacity
+ * aren't cached.
+ */
+public final class WrapTextCache {
+
+    /**
+     * Estimated memory taken by an entry besides the chars (the key, the node, the map entry and
+     * the strings headers).
+     */
+    private final static int ENTRY_OVERHEAD = 160;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache with the stripes count depending on the processors count.
+     *
+     * @param maxWeight cache capacity in bytes.
+     */
+    public WrapTextCache(long maxWeight) {
+        this(maxWeight, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxWeight    cache capacity in bytes.
+     * @param stripesCount amount of the independently locked stripes (rounded up to a power of 2).
+     */
+    public WrapTextCache(long maxWeight, int stripesCount) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Max weight should be positive.");
+        }
+        if (stripesCount < 1 || stripesCount > 1 << 16) {
+            throw new IllegalArgumentException("Stripes count should be within [1, 65536].");
+        }
+        int count = Integer.highestOneBit(stripesCount);
+        if (count < stripesCount) {
+            count <<= 1;
+        }
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxWeight / count));
+        }
+        stripeMask = count - 1;
+    }
+
+    /**
+     * Same as {@link TextUtils#wrapText(String, int)}, but the result is taken from the cache if
+     * the text was wrapped at the same width before.
+     */
+    public String wrapText(String text, int maxCharsPerLine) {
+        return wrapText(text, maxCharsPerLine, WrapMode.GREEDY);
+    }
+
+    /**
+     * Same as {@link TextUtils#wrapText(String, int, WrapMode)}, but the result is taken from the
+     * cache if the text was wrapped at the same width and mode before.
+     */
+    public String wrapText(String text, int maxCharsPerLine, WrapMode mode) {
+        if (text == null || mode == null) {
+            throw new IllegalArgumentException("Text and mode can't be null.");
+        }
+        if (maxCharsPerLine < 1) {
+            throw new IllegalArgumentException("Max chars per line should be positive.");
+        }
+        Key key = new Key(text, maxCharsPerLine, mode);
+        Stripe stripe = stripes[key.hash & stripeMask];
+        Node node = stripe.nodes.get(key);
+        if (node != null) {
+            hits.increment();
+            if (!node.accessed) {
+                // Checked first, so the hot entries aren't written to by every read
+                node.accessed = true;
+            }
+            return node.result;
+        }
+        misses.increment();
+        String result = TextUtils.wrapText(text, maxCharsPerLine, mode);
+        stripe.add(new Node(key, result), evictions);
+        return result;
+    }
+
+    /**
+     * @return amount of the results taken from the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return amount of the results wrapped because they weren't cached.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return amount of the evicted results.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return amount of the cached results.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.nodes.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return weight of the cached results in bytes.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                weight += stripe.weight;
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits: %d, misses: %d, evictions: %d, size: %d, weight: %d bytes",
+                             getHitCount(),
+                             getMissCount(),
+                             getEvictionCount(),
+                             getSize(),
+                             getWeight());
+    }
+
+    /**
+     * Cache key: the text (compared by contents), its width and mode.
+     */
+    private final static class Key {
+
+        private final String text;
+        private final int maxCharsPerLine;
+        private final WrapMode mode;
+        private final int hash;
+
+        Key(String text, int maxCharsPerLine, WrapMode mode) {
+            this.text = text;
+            this.maxCharsPerLine = maxCharsPerLine;
+            this.mode = mode;
+            // String hash is cached by the string itself, so templates are hashed only once
+            int h = text.hashCode();
+            h = 31 * h + text.length();
+            h = 31 * h + maxCharsPerLine;
+            h = 31 * h + mode.ordinal();
+            // Spread the high bits to the low ones (used for the stripe index)
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                   && maxCharsPerLine == key.maxCharsPerLine
+                   && mode == key.mode
+                   && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Cached result, linked into the segment queue of its stripe.
+     */
+    private final static class Node {
+
+        private final Key key;
+        private final String result;
+        private final long weight;
+        private volatile boolean accessed;
+
+        // Guarded by the stripe lock
+        private Node next;
+
+        Node(Key key, String result) {
+            this.key = key;
+            this.result = result;
+            weight = 2L * (key.text.length() + result.length()) + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * Linked queue of the segment nodes (least recently added at the head).
+     */
+    private final static class Segment {
+
+        private Node head;
+        private Node tail;
+        private long weight;
+
+        void addLast(Node node) {
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        Node removeFirst() {
+            Node node = head;
+            head = node.next;
+            if (head == null) {
+                tail = null;
+            }
+            node.next = null;
+            weight -= node.weight;
+            return node;
+        }
+    }
+
+    /**
+     * Independently locked part of the cache. The map is read without locking, the map and the
+     * segments are modified under the stripe lock.
+     */
+    private final static class Stripe {
+
+        private final ConcurrentHashMap<Key, Node> nodes = new ConcurrentHashMap<>();
+        private final Segment probation = new Segment();
+        private final Segment protectedSegment = new Segment();
+        private final long maxWeight;
+        private final long maxProtectedWeight;
+        private long weight;
+
+        Stripe(long maxWeight) {
+            this.maxWeight = maxWeight;
+            maxProtectedWeight = maxWeight / 5 * 4;
+        }
+
+        synchronized void add(Node node, LongAdder evictions) {
+            if (node.weight > maxWeight || nodes.putIfAbsent(node.key, node) != null) {
+                // Too heavy or already added by another thread
+                return;
+            }
+            probation.addLast(node);
+            weight += node.weight;
+            while (weight > maxWeight) {
+                if (probation.head == null) {
+                    demote();
+                    continue;
+                }
+                Node candidate = probation.removeFirst();
+                if (candidate.accessed && candidate != node) {
+                    // Accessed while on probation, so it's promoted
+                    candidate.accessed = false;
+                    protectedSegment.addLast(candidate);
+                    while (protectedSegment.weight > maxProtectedWeight) {
+                        demote();
+                    }
+                    continue;
+                }
+                nodes.remove(candidate.key);
+                weight -= candidate.weight;
+                evictions.increment();
+            }
+        }
+
+        /**
+         * Moves the head of the protected segment to probation, unless it has been accessed
+         * since it got to the protected segment (then it's moved to the tail of it).
+         */
+        private void demote() {
+            Node node = protectedSegment.removeFirst();
+            if (node.accessed) {
+                node.accessed = false;
+                protectedSegment.addLast(node);
+            } else {
+                probation.addLast(node);
+            }
+        }
+    }
+}